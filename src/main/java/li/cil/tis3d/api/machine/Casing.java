@@ -33,6 +33,9 @@ public interface Casing {
     /**
      * Flag the casing as dirty so it is saved when the chunk containing it
      * saved next.
+     * <p>
+     * This is cheap to call; while the casing is driven by a controller the
+     * underlying tile entity is only marked dirty once at the end of the tick.
      */
     void markDirty();
 
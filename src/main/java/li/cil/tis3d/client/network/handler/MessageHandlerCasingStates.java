@@ -0,0 +1,37 @@
+package li.cil.tis3d.client.network.handler;
+
+import li.cil.tis3d.common.event.ChunkWatchHandlerCasingState;
+import li.cil.tis3d.common.network.handler.AbstractMessageHandlerWithDimension;
+import li.cil.tis3d.common.network.message.MessageCasingStates;
+import li.cil.tis3d.common.tileentity.TileEntityCasing;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+public final class MessageHandlerCasingStates extends AbstractMessageHandlerWithDimension<MessageCasingStates> {
+    @Override
+    protected void onMessageSynchronized(final MessageCasingStates message, final MessageContext context) {
+        final World world = getWorld(message, context);
+        if (world == null) {
+            return;
+        }
+
+        final NBTTagList casingsNbt = message.getStates().getTagList(ChunkWatchHandlerCasingState.TAG_CASINGS, Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < casingsNbt.tagCount(); i++) {
+            final NBTTagCompound casingNbt = casingsNbt.getCompoundTagAt(i);
+            final BlockPos position = BlockPos.fromLong(casingNbt.getLong(ChunkWatchHandlerCasingState.TAG_POSITION));
+            if (!world.isBlockLoaded(position)) {
+                continue;
+            }
+
+            final TileEntity tileEntity = world.getTileEntity(position);
+            if (tileEntity instanceof TileEntityCasing) {
+                ((TileEntityCasing) tileEntity).setCasingStateClient(casingNbt.getCompoundTag(ChunkWatchHandlerCasingState.TAG_STATE));
+            }
+        }
+    }
+}
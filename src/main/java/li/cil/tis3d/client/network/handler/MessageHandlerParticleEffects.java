@@ -10,7 +10,9 @@ public final class MessageHandlerParticleEffects extends AbstractMessageHandler<
     protected void onMessageSynchronized(final MessageParticleEffect message, final MessageContext context) {
         final World world = getWorld(message.getDimension(), context);
         if (world != null) {
-            world.spawnParticle(message.getParticleType(), message.getX(), message.getY(), message.getZ(), 0, 0, 0);
+            for (int i = 0; i < message.getCount(); i++) {
+                world.spawnParticle(message.getParticleType(), message.getX(i), message.getY(i), message.getZ(i), 0, 0, 0);
+            }
         }
     }
 }
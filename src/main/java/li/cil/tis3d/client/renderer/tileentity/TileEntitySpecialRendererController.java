@@ -1,5 +1,6 @@
 package li.cil.tis3d.client.renderer.tileentity;
 
+import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.tileentity.TileEntityController;
 import net.minecraft.client.renderer.tileentity.TileEntitySpecialRenderer;
 import net.minecraft.client.resources.I18n;
@@ -8,13 +9,18 @@ public class TileEntitySpecialRendererController extends TileEntitySpecialRender
     @Override
     public void renderTileEntityAt(final TileEntityController controller, final double x, final double y, final double z, final float partialTicks, final int destroyStage) {
         final TileEntityController.ControllerState state = controller.getState();
-        if (!state.isError) {
+        final String text;
+        if (state.isError) {
+            text = I18n.format(state.translateKey);
+        } else if (state == TileEntityController.ControllerState.RUNNING && controller.getThrottle() > 0) {
+            text = I18n.format(Constants.MESSAGE_CONTROLLER_THROTTLED, 100 >> controller.getThrottle());
+        } else {
             return;
         }
 
         if (rendererDispatcher.cameraHitResult != null && rendererDispatcher.cameraHitResult.getBlockPos().equals(controller.getPos())) {
             setLightmapDisabled(true);
-            drawNameplate(controller, I18n.format(state.translateKey), x, y, z, 12);
+            drawNameplate(controller, text, x, y, z, 12);
             setLightmapDisabled(false);
         }
     }
@@ -26,6 +26,7 @@ public final class Constants {
     public static final String NAME_ITEM_MODULE_BUNDLED_REDSTONE = "module_bundled_redstone";
     public static final String NAME_ITEM_MODULE_DISPLAY = "module_display";
     public static final String NAME_ITEM_MODULE_EXECUTION = "module_execution";
+    public static final String NAME_ITEM_MODULE_EXTENDED_MEMORY = "module_extended_memory";
     public static final String NAME_ITEM_MODULE_INFRARED = "module_infrared";
     public static final String NAME_ITEM_MODULE_KEYPAD = "module_keypad";
     public static final String NAME_ITEM_MODULE_QUEUE = "module_queue";
@@ -48,6 +49,7 @@ public final class Constants {
             NAME_ITEM_MODULE_BUNDLED_REDSTONE,
             NAME_ITEM_MODULE_DISPLAY,
             NAME_ITEM_MODULE_EXECUTION,
+            NAME_ITEM_MODULE_EXTENDED_MEMORY,
             NAME_ITEM_MODULE_INFRARED,
             NAME_ITEM_MODULE_KEYPAD,
             NAME_ITEM_MODULE_QUEUE,
@@ -75,6 +77,19 @@ public final class Constants {
     public static final String MESSAGE_TOO_MANY_COLUMNS = "tis3d.compiler.too_many_columns";
     public static final String MESSAGE_TOO_MANY_LINES = "tis3d.compiler.too_many_lines";
 
+    // --------------------------------------------------------------------- //
+    // Controller
+
+    public static final String MESSAGE_CONTROLLER_THROTTLED = "tis3d.controller.status.throttled";
+
+    // --------------------------------------------------------------------- //
+    // Commands
+
+    public static final String COMMAND_METRICS = "tis3d_metrics";
+    public static final String MESSAGE_METRICS_USAGE = "tis3d.command.metrics.usage";
+    public static final String MESSAGE_METRICS_SUMMARY = "tis3d.command.metrics.summary";
+    public static final String MESSAGE_METRICS_CONTROLLER = "tis3d.command.metrics.controller";
+
     // --------------------------------------------------------------------- //
     // Code book
 
@@ -7,8 +7,12 @@ import li.cil.tis3d.api.prefab.manual.ResourceContentProvider;
 import li.cil.tis3d.client.manual.provider.GameRegistryPathProvider;
 import li.cil.tis3d.common.api.*;
 import li.cil.tis3d.common.capabilities.CapabilityInfraredReceiver;
+import li.cil.tis3d.common.command.CommandMetrics;
 import li.cil.tis3d.common.entity.EntityInfraredPacket;
+import li.cil.tis3d.common.event.ChunkWatchHandlerCasingState;
+import li.cil.tis3d.common.event.TickHandlerController;
 import li.cil.tis3d.common.event.TickHandlerInfraredPacket;
+import li.cil.tis3d.common.infrared.InfraredPathCache;
 import li.cil.tis3d.common.init.Blocks;
 import li.cil.tis3d.common.init.Items;
 import li.cil.tis3d.common.integration.Integration;
@@ -17,6 +21,7 @@ import li.cil.tis3d.common.item.ItemModule;
 import li.cil.tis3d.common.module.*;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.provider.SimpleModuleProvider;
+import li.cil.tis3d.common.tileentity.ControllerIndex;
 import net.minecraft.block.Block;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemBlock;
@@ -26,6 +31,7 @@ import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
 import net.minecraftforge.fml.common.registry.EntityRegistry;
 import net.minecraftforge.fml.common.registry.GameRegistry;
 import net.minecraftforge.oredict.OreDictionary;
@@ -84,12 +90,17 @@ public class ProxyCommon {
         MinecraftForge.EVENT_BUS.register(Network.INSTANCE);
         MinecraftForge.EVENT_BUS.register(RedstoneIntegration.INSTANCE);
         MinecraftForge.EVENT_BUS.register(TickHandlerInfraredPacket.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(InfraredPathCache.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(ChunkWatchHandlerCasingState.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(TickHandlerController.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(ControllerIndex.INSTANCE);
 
         // Register providers for built-in modules.
         ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_AUDIO, ModuleAudio::new));
         ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_BUNDLED_REDSTONE, ModuleBundledRedstone::new));
         ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_DISPLAY, ModuleDisplay::new));
         ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_EXECUTION, ModuleExecution::new));
+        ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_EXTENDED_MEMORY, ModuleExtendedMemory::new));
         ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_INFRARED, ModuleInfrared::new));
         ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_KEYPAD, ModuleKeypad::new));
         ModuleAPI.addProvider(new SimpleModuleProvider<>(Constants.NAME_ITEM_MODULE_QUEUE, ModuleQueue::new));
@@ -116,6 +127,10 @@ public class ProxyCommon {
         Integration.postInit(event);
     }
 
+    public void onServerStarting(final FMLServerStartingEvent event) {
+        event.registerServerCommand(new CommandMetrics());
+    }
+
     // --------------------------------------------------------------------- //
 
     public Block registerBlock(final String name, final Supplier<Block> constructor, final Class<? extends TileEntity> tileEntity) {
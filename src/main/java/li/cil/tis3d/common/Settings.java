@@ -28,6 +28,18 @@ public final class Settings {
      */
     public static int maxCasingsPerController = 8;
 
+    /**
+     * The number of steps per tick controllers powered at full strength from
+     * all sides perform. Zero to disable overclocking.
+     */
+    public static int overclockedStepsPerTick = 0;
+
+    /**
+     * The time in milliseconds updating controllers may take per tick and
+     * world before the heaviest controllers get throttled. Zero to disable.
+     */
+    public static float controllerTimeBudget = 10;
+
     /**
      * The maximum number of lines a program may have.
      */
@@ -45,6 +57,16 @@ public final class Settings {
      */
     public static int maxInfraredQueueLength = 16;
 
+    /**
+     * The number of values a stack module can store.
+     */
+    public static int stackCapacity = 16;
+
+    /**
+     * The number of values a queue module can store.
+     */
+    public static int queueCapacity = 16;
+
     /**
      * Whether to swing the player's arm while typing in a terminal module.
      */
@@ -65,24 +87,33 @@ public final class Settings {
     private static final String CATEGORY_MODULE = "module";
     private static final String CATEGORY_MODULE_EXECUTION = "module.execution";
     private static final String CATEGORY_MODULE_INFRARED = "module.infrared";
+    private static final String CATEGORY_MODULE_QUEUE = "module.queue";
+    private static final String CATEGORY_MODULE_STACK = "module.stack";
     private static final String CATEGORY_MODULE_TERMINAL = "module.terminal";
 
     private static final String NAME_ANIMATE_TYPING = "animateTyping";
     private static final String NAME_MAX_PACKETS_PER_TICK = "maxPacketsPerTick";
     private static final String NAME_MAX_PARTICLES_PER_TICK = "maxParticlesPerTick";
     private static final String NAME_MAX_CASINGS_PER_CONTROLLER = "maxCasings";
+    private static final String NAME_OVERCLOCKED_STEPS_PER_TICK = "overclockedStepsPerTick";
+    private static final String NAME_CONTROLLER_TIME_BUDGET = "timeBudget";
     private static final String NAME_MAX_LINES_PER_PROGRAM = "maxLinesPerProgram";
     private static final String NAME_MAX_COLUMNS_PER_LINE = "maxColumnsPerLine";
     private static final String NAME_MAX_QUEUE_LENGTH = "maxQueueLength";
+    private static final String NAME_CAPACITY = "capacity";
     private static final String NAME_MODULE_ENABLED = "enabled";
 
     private static final String COMMENT_ANIMATE_TYPING = "Whether to swing the player's arm while typing on a terminal module.";
     private static final String COMMENT_MAX_PACKETS_PER_TICK = "The maximum number of status packets modules may send per tick. When this is exceeded, throttling kicks in.";
     private static final String COMMENT_MAX_PARTICLES_PER_TICK = "The maximum number of particle effects data transfer may trigger per tick. When this is exceeded, throttling kicks in.";
     private static final String COMMENT_MAX_CASINGS_PER_CONTROLLER = "The maximum number of casings a single controller supports.";
+    private static final String COMMENT_OVERCLOCKED_STEPS_PER_TICK = "The number of steps per tick a controller performs when it receives a redstone signal of strength 15 from all six sides. Zero disables overclocking, in which case such controllers step six times per tick. Steps run on the server thread, so high values can slow down the server.";
+    private static final String COMMENT_CONTROLLER_TIME_BUDGET = "The time in milliseconds updating controllers may take per tick in each world. When this is exceeded, the controllers taking the most time are slowed down until there is room again. Zero disables the limit.";
     private static final String COMMENT_MAX_LINES_PER_PROGRAM = "The maximum number of lines an ASM program for an execution node may have.";
     private static final String COMMENT_MAX_COLUMNS_PER_LINE = "The maximum number of columns per line of an ASM program for an execution node may have.";
     private static final String COMMENT_MAX_QUEUE_LENGTH = "The maximum number of infrared packets that can be stored in the receiver's buffer.";
+    private static final String COMMENT_QUEUE_CAPACITY = "The maximum number of values that can be stored in a queue module.";
+    private static final String COMMENT_STACK_CAPACITY = "The maximum number of values that can be stored in a stack module.";
     private static final String COMMENT_MODULE_ENABLED = "Whether the module is enabled. Disabled modules are not registered, meaning if you disable them later on the items will disappear!";
 
     // --------------------------------------------------------------------- //
@@ -101,6 +132,10 @@ public final class Settings {
 
         maxCasingsPerController = config.getInt(NAME_MAX_CASINGS_PER_CONTROLLER, CATEGORY_CONTROLLER,
                 maxCasingsPerController, 1, 512, COMMENT_MAX_CASINGS_PER_CONTROLLER);
+        overclockedStepsPerTick = config.getInt(NAME_OVERCLOCKED_STEPS_PER_TICK, CATEGORY_CONTROLLER,
+                overclockedStepsPerTick, 0, 1000, COMMENT_OVERCLOCKED_STEPS_PER_TICK);
+        controllerTimeBudget = config.getFloat(NAME_CONTROLLER_TIME_BUDGET, CATEGORY_CONTROLLER,
+                controllerTimeBudget, 0, 50, COMMENT_CONTROLLER_TIME_BUDGET);
 
         maxLinesPerProgram = config.getInt(NAME_MAX_LINES_PER_PROGRAM, CATEGORY_MODULE_EXECUTION,
                 maxLinesPerProgram, 1, 200, COMMENT_MAX_LINES_PER_PROGRAM);
@@ -108,6 +143,10 @@ public final class Settings {
                 maxColumnsPerLine, 1, 80, COMMENT_MAX_COLUMNS_PER_LINE);
         maxInfraredQueueLength = config.getInt(NAME_MAX_QUEUE_LENGTH, CATEGORY_MODULE_INFRARED,
                 maxInfraredQueueLength, 1, 64, COMMENT_MAX_QUEUE_LENGTH);
+        queueCapacity = config.getInt(NAME_CAPACITY, CATEGORY_MODULE_QUEUE,
+                queueCapacity, 1, 1024, COMMENT_QUEUE_CAPACITY);
+        stackCapacity = config.getInt(NAME_CAPACITY, CATEGORY_MODULE_STACK,
+                stackCapacity, 1, 1024, COMMENT_STACK_CAPACITY);
         animateTypingHand = config.getBoolean(NAME_ANIMATE_TYPING, CATEGORY_MODULE_TERMINAL,
                 animateTypingHand, COMMENT_ANIMATE_TYPING);
 
@@ -7,6 +7,7 @@ import net.minecraftforge.fml.common.SidedProxy;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
 import org.apache.logging.log4j.Logger;
 
 /**
@@ -39,6 +40,11 @@ public final class TIS3D {
         proxy.onPostInit(event);
     }
 
+    @EventHandler
+    public void onServerStarting(final FMLServerStartingEvent event) {
+        proxy.onServerStarting(event);
+    }
+
     // --------------------------------------------------------------------- //
 
     /**
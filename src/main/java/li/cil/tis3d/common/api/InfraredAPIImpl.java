@@ -3,18 +3,29 @@ package li.cil.tis3d.common.api;
 import li.cil.tis3d.api.detail.InfraredAPI;
 import li.cil.tis3d.api.infrared.InfraredPacket;
 import li.cil.tis3d.common.entity.EntityInfraredPacket;
+import li.cil.tis3d.common.event.TickHandlerInfraredPacket;
+import li.cil.tis3d.common.infrared.VirtualInfraredPacket;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
 /**
- * Allow spawning infrared packets externally, reusing our entity.
+ * Allow spawning infrared packets externally, reusing our packet logic.
+ * <p>
+ * On the server packets are simulated virtually, which is a lot cheaper
+ * than spawning an entity per packet.
  */
 public final class InfraredAPIImpl implements InfraredAPI {
     @Override
     public InfraredPacket sendPacket(final World world, final Vec3d position, final Vec3d direction, final short value) {
-        final EntityInfraredPacket entity = new EntityInfraredPacket(world);
-        entity.configure(position, direction.normalize(), value);
-        world.spawnEntity(entity);
-        return entity;
+        if (world.isRemote) {
+            final EntityInfraredPacket entity = new EntityInfraredPacket(world);
+            entity.configure(position, direction.normalize(), value);
+            world.spawnEntity(entity);
+            return entity;
+        }
+
+        final VirtualInfraredPacket packet = new VirtualInfraredPacket(world, position, direction.normalize(), value);
+        TickHandlerInfraredPacket.INSTANCE.addVirtualPacket(packet);
+        return packet;
     }
 }
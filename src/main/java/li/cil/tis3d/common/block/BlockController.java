@@ -114,6 +114,7 @@ public final class BlockController extends Block {
         if (tileEntity instanceof TileEntityController) {
             final TileEntityController controller = (TileEntityController) tileEntity;
             controller.checkNeighbors();
+            controller.markRedstoneDirty();
         }
         super.neighborChanged(state, world, pos, neighborBlock, neighborPos);
     }
@@ -0,0 +1,78 @@
+package li.cil.tis3d.common.command;
+
+import li.cil.tis3d.common.Constants;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.event.TickHandlerController;
+import li.cil.tis3d.common.tileentity.TileEntityController;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lists how much time updating controllers takes in the world of the command
+ * sender, and which controllers are being throttled to stay within the
+ * configured time budget.
+ */
+public final class CommandMetrics extends CommandBase {
+    /**
+     * The number of controllers to list if not specified.
+     */
+    private static final int DEFAULT_COUNT = 5;
+
+    // --------------------------------------------------------------------- //
+
+    @Override
+    public String getName() {
+        return Constants.COMMAND_METRICS;
+    }
+
+    @Override
+    public String getUsage(final ICommandSender sender) {
+        return Constants.MESSAGE_METRICS_USAGE;
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void execute(final MinecraftServer server, final ICommandSender sender, final String[] args) throws CommandException {
+        final int count = args.length > 0 ? parseInt(args[0], 1) : DEFAULT_COUNT;
+        final List<TickHandlerController.ControllerTiming> timings = TickHandlerController.INSTANCE.getTimings(sender.getEntityWorld());
+
+        long total = 0;
+        int throttled = 0;
+        for (final TickHandlerController.ControllerTiming timing : timings) {
+            total += timing.getAverageTime();
+            if (timing.getController().getThrottle() > 0) {
+                throttled++;
+            }
+        }
+
+        sender.sendMessage(new TextComponentTranslation(Constants.MESSAGE_METRICS_SUMMARY,
+                timings.size(), formatMillis(total), String.format(Locale.US, "%.2f", Settings.controllerTimeBudget), throttled));
+
+        for (final TickHandlerController.ControllerTiming timing : timings.subList(0, Math.min(count, timings.size()))) {
+            final TileEntityController controller = timing.getController();
+            final BlockPos position = controller.getPos();
+            sender.sendMessage(new TextComponentTranslation(Constants.MESSAGE_METRICS_CONTROLLER,
+                    position.getX(), position.getY(), position.getZ(),
+                    formatMillis(timing.getAverageTime()),
+                    controller.getState().name().toLowerCase(Locale.US),
+                    100 >> controller.getThrottle()));
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static String formatMillis(final long nanos) {
+        return String.format(Locale.US, "%.2f", nanos / 1000000.0);
+    }
+}
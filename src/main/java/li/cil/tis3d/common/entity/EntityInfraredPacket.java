@@ -1,12 +1,9 @@
 package li.cil.tis3d.common.entity;
 
 import li.cil.tis3d.api.infrared.InfraredPacket;
-import li.cil.tis3d.api.infrared.InfraredReceiver;
-import li.cil.tis3d.common.capabilities.CapabilityInfraredReceiver;
 import li.cil.tis3d.common.event.TickHandlerInfraredPacket;
+import li.cil.tis3d.common.infrared.InfraredCollisions;
 import li.cil.tis3d.common.network.Network;
-import li.cil.tis3d.common.network.message.MessageParticleEffect;
-import li.cil.tis3d.util.Raytracing;
 import net.minecraft.block.Block;
 import net.minecraft.entity.Entity;
 import net.minecraft.init.Blocks;
@@ -15,19 +12,14 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.datasync.DataParameter;
 import net.minecraft.network.datasync.DataSerializers;
 import net.minecraft.network.datasync.EntityDataManager;
-import net.minecraft.util.EnumParticleTypes;
-import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
-import net.minecraftforge.common.capabilities.ICapabilityProvider;
-import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 import javax.annotation.Nullable;
-import java.util.List;
 
 /**
  * Represents a single value in transmission, sent by an {@link li.cil.tis3d.common.module.ModuleInfrared}.
@@ -41,13 +33,13 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
      * <p>
      * Don't ask. This is Minecraft.
      */
-    private final static float TRAVEL_SPEED = 24f;
+    public final static float TRAVEL_SPEED = 24f;
 
     /**
      * The default lifetime of a packet, in ticks, implicitly controlling how
      * far packets travel (that being <tt>TRAVEL_SPEED * DEFAULT_LIFETIME</tt>).
      */
-    private static final int DEFAULT_LIFETIME = 2;
+    public static final int DEFAULT_LIFETIME = 2;
 
     // NBT tag names.
     private static final String TAG_VALUE = "value";
@@ -60,9 +52,10 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
     // Persisted data
 
     /**
-     * The number of ticks that remain until the packet de-spawns.
+     * The tick at the end of which the packet de-spawns, as counted by
+     * {@link TickHandlerInfraredPacket#getCurrentTick()}.
      */
-    private int lifetime;
+    private long expirationTick;
 
     /**
      * The value carried by this packet.
@@ -88,21 +81,59 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
      * @param value     the value the packet carries.
      */
     public void configure(final Vec3d start, final Vec3d direction, final short value) {
+        configure(start, direction, value, DEFAULT_LIFETIME);
+    }
+
+    /**
+     * Sets up the packet's starting position, velocity, value carried and
+     * remaining lifetime.
+     * <p>
+     * Called from {@link li.cil.tis3d.common.infrared.VirtualInfraredPacket}
+     * when a packet needs to become an actual entity.
+     *
+     * @param start     the position the packet continues traveling at.
+     * @param direction the direction in which the packet travels.
+     * @param value     the value the packet carries.
+     * @param lifetime  the number of ticks until the packet de-spawns.
+     */
+    public void configure(final Vec3d start, final Vec3d direction, final short value, final int lifetime) {
         setPosition(start.xCoord, start.yCoord, start.zCoord);
         motionX = direction.xCoord * TRAVEL_SPEED;
         motionY = direction.yCoord * TRAVEL_SPEED;
         motionZ = direction.zCoord * TRAVEL_SPEED;
-        lifetime = DEFAULT_LIFETIME;
+        setLifetime(lifetime);
         this.value = value;
         getDataManager().set(DATA_VALUE, value & 0xFFFF);
     }
 
     /**
-     * Called from our watchdog each server tick to update our lifetime.
+     * The tick at the end of which the packet de-spawns, used by our watchdog.
+     *
+     * @return the expiration tick of the packet.
      */
-    public void updateLifetime() {
-        if (lifetime-- < 1) {
-            setDead();
+    public long getExpirationTick() {
+        return expirationTick;
+    }
+
+    /**
+     * The number of ticks that remain until the packet de-spawns.
+     *
+     * @return the remaining lifetime of the packet.
+     */
+    private int getLifetime() {
+        return (int) (expirationTick - TickHandlerInfraredPacket.INSTANCE.getCurrentTick());
+    }
+
+    /**
+     * Set the number of ticks that remain until the packet de-spawns, and
+     * update the watchdog's schedule accordingly.
+     *
+     * @param lifetime the new remaining lifetime of the packet.
+     */
+    private void setLifetime(final int lifetime) {
+        expirationTick = TickHandlerInfraredPacket.INSTANCE.getCurrentTick() + lifetime;
+        if (!isDead && !getEntityWorld().isRemote) {
+            TickHandlerInfraredPacket.INSTANCE.watchPacket(this);
         }
     }
 
@@ -136,20 +167,20 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
 
     @Override
     protected void readEntityFromNBT(final NBTTagCompound nbt) {
-        lifetime = nbt.getInteger(TAG_LIFETIME);
+        setLifetime(nbt.getInteger(TAG_LIFETIME));
         value = nbt.getShort(TAG_VALUE);
     }
 
     @Override
     protected void writeEntityToNBT(final NBTTagCompound nbt) {
-        nbt.setInteger(TAG_LIFETIME, lifetime);
+        nbt.setInteger(TAG_LIFETIME, getLifetime());
         nbt.setShort(TAG_VALUE, value);
     }
 
     @Override
     public void onEntityUpdate() {
-        // Enforce lifetime, fail-safe, should be tracked in updateLifetime().
-        if (lifetime < 1) {
+        // Enforce lifetime, fail-safe, should be tracked by our watchdog.
+        if (getLifetime() < 1) {
             setDead();
             return;
         }
@@ -223,8 +254,8 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
 
     @Override
     public void redirectPacket(final Vec3d position, final Vec3d direction, final int addedLifetime) {
-        lifetime += addedLifetime;
-        if (lifetime > 0) {
+        expirationTick += addedLifetime;
+        if (getLifetime() > 0) {
             // Revive!
             revive();
 
@@ -282,9 +313,7 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
         final double y = posY + dy * t;
         final double z = posZ + dz * t;
 
-        final MessageParticleEffect message = new MessageParticleEffect(world, EnumParticleTypes.REDSTONE, x, y, z);
-        final NetworkRegistry.TargetPoint target = Network.getTargetPoint(world, x, y, z, Network.RANGE_LOW);
-        Network.INSTANCE.getWrapper().sendToAllAround(message, target);
+        Network.sendInfraredEffect(world, x, y, z);
     }
 
     @Nullable
@@ -322,53 +351,7 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
         final World world = getEntityWorld();
         final Vec3d start = new Vec3d(posX, posY, posZ);
         final Vec3d target = start.addVector(motionX, motionY, motionZ);
-
-        // Check for block collisions.
-        final RayTraceResult blockHit = Raytracing.raytrace(world, start, target, Raytracing::intersectIgnoringTransparent);
-
-        // Check for entity collisions.
-        final RayTraceResult entityHit = checkEntityCollision(world, start, target);
-
-        // If we have both, pick the closer one.
-        if (blockHit != null && blockHit.typeOfHit != RayTraceResult.Type.MISS &&
-                entityHit != null && entityHit.typeOfHit != RayTraceResult.Type.MISS) {
-            if (blockHit.hitVec.squareDistanceTo(start) < entityHit.hitVec.squareDistanceTo(start)) {
-                return blockHit;
-            } else {
-                return entityHit;
-            }
-        } else if (blockHit != null) {
-            return blockHit;
-        } else if (entityHit != null) {
-            return entityHit;
-        } else {
-            return null;
-        }
-    }
-
-    @Nullable
-    private RayTraceResult checkEntityCollision(final World world, final Vec3d start, final Vec3d target) {
-        RayTraceResult entityHit = null;
-        double bestSqrDistance = Double.POSITIVE_INFINITY;
-
-        final List<Entity> collisions = world.getEntitiesWithinAABBExcludingEntity(this, getEntityBoundingBox().addCoord(motionX, motionY, motionZ));
-        for (final Entity entity : collisions) {
-            if (entity.canBeCollidedWith()) {
-                final AxisAlignedBB entityBounds = entity.getEntityBoundingBox();
-                final RayTraceResult hit = entityBounds.calculateIntercept(start, target);
-                if (hit != null) {
-                    final double sqrDistance = start.squareDistanceTo(hit.hitVec);
-                    if (sqrDistance < bestSqrDistance) {
-                        hit.entityHit = entity;
-                        hit.typeOfHit = RayTraceResult.Type.ENTITY;
-                        entityHit = hit;
-                        bestSqrDistance = sqrDistance;
-                    }
-                }
-            }
-        }
-
-        return entityHit;
+        return InfraredCollisions.checkCollision(world, start, target, getEntityBoundingBox().addCoord(motionX, motionY, motionZ), this);
     }
 
     private void onBlockCollision(final RayTraceResult hit) {
@@ -391,10 +374,7 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
         setDead();
 
         // Next up, notify receiver, if any.
-        if (block instanceof InfraredReceiver) {
-            ((InfraredReceiver) block).onInfraredPacket(this, hit);
-        }
-        onCapabilityProviderCollision(hit, world.getTileEntity(pos));
+        InfraredCollisions.notifyReceiver(world, this, hit);
     }
 
     private void onEntityCollision(final RayTraceResult hit) {
@@ -402,15 +382,6 @@ public final class EntityInfraredPacket extends Entity implements InfraredPacket
         setDead();
 
         // Next up, notify receiver, if any.
-        onCapabilityProviderCollision(hit, hit.entityHit);
-    }
-
-    private void onCapabilityProviderCollision(final RayTraceResult hit, @Nullable final ICapabilityProvider provider) {
-        if (provider != null) {
-            final InfraredReceiver capability = provider.getCapability(CapabilityInfraredReceiver.INFRARED_RECEIVER_CAPABILITY, hit.sideHit);
-            if (capability != null) {
-                capability.onInfraredPacket(this, hit);
-            }
-        }
+        InfraredCollisions.notifyReceiver(getEntityWorld(), this, hit);
     }
 }
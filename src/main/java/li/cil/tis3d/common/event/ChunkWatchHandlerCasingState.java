@@ -0,0 +1,186 @@
+package li.cil.tis3d.common.event;
+
+import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.network.message.MessageCasingStates;
+import li.cil.tis3d.common.tileentity.TileEntityCasing;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends module state of casings to players in bulk when they start watching
+ * the chunks the casings are in.
+ * <p>
+ * The tile entity data sent with the chunk only contains what is needed to
+ * render the casing (see {@link TileEntityCasing#getUpdateTag()}),
+ * the potentially large module state is collected here instead. Pending casings
+ * are sent nearest first, with casings in front of the player preferred, in
+ * batches of limited size, spreading the work over multiple ticks when a player
+ * walks into a large base.
+ */
+public final class ChunkWatchHandlerCasingState {
+    public static final ChunkWatchHandlerCasingState INSTANCE = new ChunkWatchHandlerCasingState();
+
+    // --------------------------------------------------------------------- //
+
+    // NBT tag names.
+    public static final String TAG_CASINGS = "casings";
+    public static final String TAG_POSITION = "pos";
+    public static final String TAG_STATE = "state";
+
+    /**
+     * The maximum number of casings to send to a single player per tick.
+     */
+    private static final int MAX_CASINGS_PER_TICK = 64;
+
+    /**
+     * Factor distances of casings behind the player are multiplied with when
+     * sorting, so that the ones the player can likely see come first.
+     */
+    private static final double BEHIND_PENALTY = 4;
+
+    /**
+     * Casings waiting to be sent, per player.
+     */
+    private final Map<EntityPlayerMP, List<TileEntityCasing>> pending = new HashMap<>();
+
+    // --------------------------------------------------------------------- //
+
+    @SubscribeEvent
+    public void onChunkWatch(final ChunkWatchEvent.Watch event) {
+        final EntityPlayerMP player = event.getPlayer();
+        final ChunkPos chunkPos = event.getChunk();
+        final World world = player.getEntityWorld();
+        if (!world.isBlockLoaded(new BlockPos(chunkPos.getXStart(), 0, chunkPos.getZStart()))) {
+            return;
+        }
+
+        final Chunk chunk = world.getChunkFromChunkCoords(chunkPos.chunkXPos, chunkPos.chunkZPos);
+        List<TileEntityCasing> casings = null;
+        for (final TileEntity tileEntity : chunk.getTileEntityMap().values()) {
+            if (tileEntity instanceof TileEntityCasing) {
+                if (casings == null) {
+                    casings = pending.computeIfAbsent(player, p -> new ArrayList<>());
+                }
+                casings.add((TileEntityCasing) tileEntity);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkUnWatch(final ChunkWatchEvent.UnWatch event) {
+        final List<TileEntityCasing> casings = pending.get(event.getPlayer());
+        if (casings != null) {
+            final ChunkPos chunkPos = event.getChunk();
+            casings.removeIf(casing -> isInChunk(casing, chunkPos));
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(final PlayerEvent.PlayerLoggedOutEvent event) {
+        pending.remove(event.player);
+    }
+
+    @SubscribeEvent
+    public void onServerTick(final TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        final Iterator<Map.Entry<EntityPlayerMP, List<TileEntityCasing>>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<EntityPlayerMP, List<TileEntityCasing>> entry = iterator.next();
+            final EntityPlayerMP player = entry.getKey();
+            final List<TileEntityCasing> casings = entry.getValue();
+            casings.removeIf(casing -> casing.isInvalid() || casing.getWorld() != player.getEntityWorld());
+            if (casings.isEmpty()) {
+                iterator.remove();
+                continue;
+            }
+
+            sendBatch(player, casings);
+            if (casings.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Send the state of the most relevant pending casings to the specified
+     * player and remove them from the list of pending casings.
+     *
+     * @param player  the player to send the states to.
+     * @param casings the casings pending to be sent to the player.
+     */
+    private static void sendBatch(final EntityPlayerMP player, final List<TileEntityCasing> casings) {
+        if (casings.size() > MAX_CASINGS_PER_TICK) {
+            final Vec3d eyes = player.getPositionEyes(1);
+            final Vec3d look = player.getLookVec();
+            casings.sort(Comparator.comparingDouble(casing -> getPriority(casing, eyes, look)));
+        }
+
+        final List<TileEntityCasing> batch = casings.subList(0, Math.min(MAX_CASINGS_PER_TICK, casings.size()));
+        final NBTTagList casingsNbt = new NBTTagList();
+        for (final TileEntityCasing casing : batch) {
+            final NBTTagCompound stateNbt = new NBTTagCompound();
+            casing.writeCasingStateToNBT(stateNbt);
+
+            final NBTTagCompound casingNbt = new NBTTagCompound();
+            casingNbt.setLong(TAG_POSITION, casing.getPos().toLong());
+            casingNbt.setTag(TAG_STATE, stateNbt);
+            casingsNbt.appendTag(casingNbt);
+        }
+        batch.clear();
+
+        final NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setTag(TAG_CASINGS, casingsNbt);
+        Network.INSTANCE.getWrapper().sendTo(new MessageCasingStates(player.getEntityWorld(), nbt), player);
+    }
+
+    /**
+     * Compute the sort key for a casing; lower values get sent first.
+     *
+     * @param casing the casing to get the priority for.
+     * @param eyes   the position of the player's eyes.
+     * @param look   the direction the player is looking in.
+     * @return the priority of the casing.
+     */
+    private static double getPriority(final TileEntityCasing casing, final Vec3d eyes, final Vec3d look) {
+        final BlockPos position = casing.getPos();
+        final double dx = position.getX() + 0.5 - eyes.xCoord;
+        final double dy = position.getY() + 0.5 - eyes.yCoord;
+        final double dz = position.getZ() + 0.5 - eyes.zCoord;
+        final double distanceSq = dx * dx + dy * dy + dz * dz;
+        final boolean isInFront = dx * look.xCoord + dy * look.yCoord + dz * look.zCoord >= 0;
+        return isInFront ? distanceSq : distanceSq * BEHIND_PENALTY;
+    }
+
+    private static boolean isInChunk(final TileEntity tileEntity, final ChunkPos chunkPos) {
+        final BlockPos position = tileEntity.getPos();
+        return (position.getX() >> 4) == chunkPos.chunkXPos && (position.getZ() >> 4) == chunkPos.chunkZPos;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ChunkWatchHandlerCasingState() {
+    }
+}
@@ -0,0 +1,304 @@
+package li.cil.tis3d.common.event;
+
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.tileentity.TileEntityController;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.relauncher.Side;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drives all controllers that currently have something to do, instead of
+ * having each of them ticked as a tile entity by the world.
+ * <p>
+ * Scheduled controllers are kept in a list per world, in the order they were
+ * scheduled in, and updated once per tick after the world updated its tile
+ * entities. Controllers that report they no longer need updating are dropped
+ * from the list until they get scheduled again, so idle controllers cost
+ * nothing.
+ * <p>
+ * On the server, the time spent updating each controller is tracked. When
+ * the controllers of a world take longer than {@link Settings#controllerTimeBudget}
+ * the ones taking the most time get throttled, and are restored to full
+ * speed, lightest first, once there is room in the budget again.
+ */
+public final class TickHandlerController {
+    public static final TickHandlerController INSTANCE = new TickHandlerController();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Client and server keep separate lists, since in single player they
+     * are driven from different threads.
+     */
+    private final Scheduler serverScheduler = new Scheduler(true);
+    private final Scheduler clientScheduler = new Scheduler(false);
+
+    /**
+     * The number of ticks to wait between adjusting throttle levels, giving
+     * the measured times some time to settle after a change.
+     */
+    private static final int ADJUST_INTERVAL = 20;
+
+    /**
+     * Weight of a new sample in the running average of update times, as a
+     * shift, i.e. each sample counts for one eighth.
+     */
+    private static final int AVERAGE_SHIFT = 3;
+
+    /**
+     * Fraction of the budget that has to be unused before throttled
+     * controllers get sped up again, to avoid oscillating around the limit.
+     */
+    private static final float RESTORE_THRESHOLD = 0.75f;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Schedule a controller for updating, starting in the next tick of its
+     * world. Does nothing if the controller is already scheduled.
+     *
+     * @param controller the controller to schedule.
+     */
+    public void schedule(final TileEntityController controller) {
+        getScheduler(controller.getWorld()).schedule(controller);
+    }
+
+    /**
+     * Get the timings of all controllers currently scheduled in the specified
+     * server world, most expensive first.
+     *
+     * @param world the world to get the timings for.
+     * @return the timings of the scheduled controllers.
+     */
+    public List<ControllerTiming> getTimings(final World world) {
+        final List<ControllerTiming> timings = new ArrayList<>(serverScheduler.getTimings(world));
+        timings.sort(Comparator.comparingLong(ControllerTiming::getAverageTime).reversed());
+        return timings;
+    }
+
+    /**
+     * Timing information on a scheduled controller.
+     */
+    public static final class ControllerTiming {
+        private final TileEntityController controller;
+        private long averageTime;
+
+        private ControllerTiming(final TileEntityController controller) {
+            this.controller = controller;
+        }
+
+        /**
+         * Get the controller this timing is for.
+         *
+         * @return the controller.
+         */
+        public TileEntityController getController() {
+            return controller;
+        }
+
+        /**
+         * Get the running average of the time updating the controller took
+         * per tick, in nanoseconds.
+         *
+         * @return the average update time.
+         */
+        public long getAverageTime() {
+            return averageTime;
+        }
+
+        private void addSample(final long time) {
+            averageTime += (time - averageTime) >> AVERAGE_SHIFT;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @SubscribeEvent
+    public void onWorldTick(final TickEvent.WorldTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || event.side != Side.SERVER) {
+            return;
+        }
+
+        serverScheduler.update(event.world);
+    }
+
+    @SubscribeEvent
+    public void onClientTick(final TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        clientScheduler.updateAll();
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(final WorldEvent.Unload event) {
+        getScheduler(event.getWorld()).remove(event.getWorld());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private Scheduler getScheduler(final World world) {
+        return world.isRemote ? clientScheduler : serverScheduler;
+    }
+
+    private static final class Scheduler {
+        private final boolean isGoverned;
+        private final Map<World, WorldSchedule> scheduledByWorld = new HashMap<>();
+        private final Set<TileEntityController> scheduled = new HashSet<>();
+        private final List<TileEntityController> pendingAdds = new ArrayList<>();
+
+        Scheduler(final boolean isGoverned) {
+            this.isGoverned = isGoverned;
+        }
+
+        public void schedule(final TileEntityController controller) {
+            if (scheduled.add(controller)) {
+                pendingAdds.add(controller);
+            }
+        }
+
+        public void remove(final World world) {
+            final WorldSchedule schedule = scheduledByWorld.remove(world);
+            if (schedule != null) {
+                schedule.timings.forEach(timing -> scheduled.remove(timing.controller));
+            }
+            pendingAdds.removeIf(controller -> controller.getWorld() == world);
+        }
+
+        public List<ControllerTiming> getTimings(final World world) {
+            final WorldSchedule schedule = scheduledByWorld.get(world);
+            return schedule != null ? schedule.timings : Collections.emptyList();
+        }
+
+        public void updateAll() {
+            addPending();
+            scheduledByWorld.forEach(this::update);
+        }
+
+        public void update(final World world) {
+            addPending();
+            final WorldSchedule schedule = scheduledByWorld.get(world);
+            if (schedule != null) {
+                update(world, schedule);
+            }
+        }
+
+        // --------------------------------------------------------------------- //
+
+        private void addPending() {
+            for (final TileEntityController controller : pendingAdds) {
+                scheduledByWorld.computeIfAbsent(controller.getWorld(), w -> new WorldSchedule()).timings.add(new ControllerTiming(controller));
+            }
+            pendingAdds.clear();
+        }
+
+        private void update(final World world, final WorldSchedule schedule) {
+            // Update in order, dropping controllers that are done in place to
+            // keep the order of the remaining ones stable.
+            final List<ControllerTiming> timings = schedule.timings;
+            int count = 0;
+            for (int i = 0; i < timings.size(); i++) {
+                final ControllerTiming timing = timings.get(i);
+                final TileEntityController controller = timing.controller;
+                if (controller.needsUpdate() && world.isBlockLoaded(controller.getPos())) {
+                    if (isGoverned) {
+                        final long start = System.nanoTime();
+                        controller.update();
+                        timing.addSample(System.nanoTime() - start);
+                    } else {
+                        controller.update();
+                    }
+                }
+
+                // Throttling only applies to running controllers. Reset it
+                // before deciding whether to keep the controller scheduled,
+                // so that the reset is still sent to clients in its next
+                // update instead of keeping it scheduled indefinitely.
+                if (controller.getThrottle() != 0 && controller.getState() != TileEntityController.ControllerState.RUNNING) {
+                    controller.setThrottle(0);
+                }
+
+                if (controller.needsUpdate()) {
+                    timings.set(count++, timing);
+                } else {
+                    scheduled.remove(controller);
+                }
+            }
+            timings.subList(count, timings.size()).clear();
+
+            if (isGoverned && --schedule.ticksUntilAdjust <= 0) {
+                schedule.ticksUntilAdjust = ADJUST_INTERVAL;
+                adjustThrottles(timings);
+            }
+        }
+
+        private static void adjustThrottles(final List<ControllerTiming> timings) {
+            final long budget = (long) (Settings.controllerTimeBudget * 1000000);
+            if (budget <= 0) {
+                timings.forEach(timing -> timing.controller.setThrottle(0));
+                return;
+            }
+
+            long total = 0;
+            for (final ControllerTiming timing : timings) {
+                total += timing.averageTime;
+            }
+
+            if (total > budget) {
+                // Over budget: slow down the heaviest controllers, assuming
+                // each throttle level halves the time a controller takes,
+                // until we expect to be within the budget again. Controllers
+                // are throttled at most one level per adjustment, so that
+                // the load is spread over multiple controllers where possible.
+                final List<ControllerTiming> candidates = new ArrayList<>(timings);
+                candidates.removeIf(timing -> timing.controller.getState() != TileEntityController.ControllerState.RUNNING ||
+                                              timing.controller.getThrottle() >= TileEntityController.MAX_THROTTLE);
+                candidates.sort(Comparator.comparingLong(ControllerTiming::getAverageTime).reversed());
+                long excess = total - budget;
+                for (final ControllerTiming timing : candidates) {
+                    if (excess <= 0) {
+                        break;
+                    }
+                    timing.controller.setThrottle(timing.controller.getThrottle() + 1);
+                    excess -= timing.averageTime / 2;
+                }
+            } else {
+                // Within budget: speed throttled controllers back up, lightest
+                // first, as long as we expect to stay below the threshold.
+                final List<ControllerTiming> candidates = new ArrayList<>(timings);
+                candidates.removeIf(timing -> timing.controller.getThrottle() <= 0);
+                candidates.sort(Comparator.comparingLong(ControllerTiming::getAverageTime));
+                long headroom = (long) (budget * RESTORE_THRESHOLD) - total;
+                for (final ControllerTiming timing : candidates) {
+                    headroom -= timing.averageTime;
+                    if (headroom < 0) {
+                        break;
+                    }
+                    timing.controller.setThrottle(timing.controller.getThrottle() - 1);
+                }
+            }
+        }
+    }
+
+    private static final class WorldSchedule {
+        final List<ControllerTiming> timings = new ArrayList<>();
+        int ticksUntilAdjust = ADJUST_INTERVAL;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private TickHandlerController() {
+    }
+}
@@ -1,40 +1,106 @@
 package li.cil.tis3d.common.event;
 
 import li.cil.tis3d.common.entity.EntityInfraredPacket;
+import li.cil.tis3d.common.infrared.VirtualInfraredPacket;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
- * Makes sure infrared packets die once their lifetime expires.
+ * Advances virtual infrared packets and makes sure infrared packet entities
+ * die once their lifetime expires.
  * <p>
- * This would not be guaranteed if they handled this themselves, due to the
- * fact that entities do not update while inside the one-chunk wide border
+ * The latter would not be guaranteed if they handled this themselves, due to
+ * the fact that entities do not update while inside the one-chunk wide border
  * of loaded chunks around the overall area of loaded chunks.
+ * <p>
+ * Entities are kept in a hashed timing wheel, i.e. in one of a fixed number
+ * of slots, picked by the tick they expire in. Each tick only the slot of
+ * the current tick is checked for expired packets, and scheduling as well
+ * as cancelling is a constant time operation.
  */
 public final class TickHandlerInfraredPacket {
     public static final TickHandlerInfraredPacket INSTANCE = new TickHandlerInfraredPacket();
 
     // --------------------------------------------------------------------- //
 
-    private final Set<EntityInfraredPacket> livePackets = new HashSet<>();
-    private final List<EntityInfraredPacket> pendingRemovals = new ArrayList<>();
-    private final List<EntityInfraredPacket> pendingAdds = new ArrayList<>();
+    /**
+     * The number of slots in the timing wheel. Must be a power of two. Packets
+     * living longer than this many ticks stay in their slot for multiple
+     * rounds of the wheel, which is fine, since lifetimes are usually short.
+     */
+    private static final int WHEEL_SIZE = 64;
+
+    @SuppressWarnings("unchecked")
+    private final Set<EntityInfraredPacket>[] wheel = new Set[WHEEL_SIZE];
+    private final Map<EntityInfraredPacket, Set<EntityInfraredPacket>> slotByPacket = new HashMap<>();
+    private final List<EntityInfraredPacket> expiredPackets = new ArrayList<>();
+
+    /**
+     * The number of server ticks since startup, used as the clock for packet
+     * lifetimes. Increments at the very end of each server tick.
+     */
+    private long currentTick;
+
+    private List<VirtualInfraredPacket> virtualPackets = new ArrayList<>();
+    private List<VirtualInfraredPacket> nextVirtualPackets = new ArrayList<>();
 
     // --------------------------------------------------------------------- //
 
+    /**
+     * Start tracking a virtual packet, which will be advanced starting at
+     * the end of the current tick.
+     *
+     * @param packet the packet to track.
+     */
+    public void addVirtualPacket(final VirtualInfraredPacket packet) {
+        virtualPackets.add(packet);
+    }
+
+    /**
+     * The current tick as used for packet lifetimes.
+     *
+     * @return the current tick.
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Schedule a packet to be killed at the end of the tick it expires in,
+     * replacing any previous schedule of that packet.
+     *
+     * @param packet the packet to watch.
+     */
     public void watchPacket(final EntityInfraredPacket packet) {
-        pendingRemovals.remove(packet);
-        pendingAdds.add(packet);
+        unwatchPacket(packet);
+
+        final long expirationTick = Math.max(currentTick, packet.getExpirationTick());
+        final int slotIndex = (int) (expirationTick & (WHEEL_SIZE - 1));
+        if (wheel[slotIndex] == null) {
+            wheel[slotIndex] = new HashSet<>();
+        }
+        wheel[slotIndex].add(packet);
+        slotByPacket.put(packet, wheel[slotIndex]);
     }
 
+    /**
+     * Stop watching a packet, e.g. because it died already.
+     *
+     * @param packet the packet to stop watching.
+     */
     public void unwatchPacket(final EntityInfraredPacket packet) {
-        pendingAdds.remove(packet);
-        pendingRemovals.add(packet);
+        final Set<EntityInfraredPacket> slot = slotByPacket.remove(packet);
+        if (slot != null) {
+            slot.remove(packet);
+        }
     }
 
     // --------------------------------------------------------------------- //
@@ -45,13 +111,49 @@ public final class TickHandlerInfraredPacket {
             return;
         }
 
-        pendingAdds.forEach(livePackets::add);
-        pendingAdds.clear();
+        // Advance virtual packets first, so that entities replacing them are
+        // watched starting this tick, like newly spawned ones.
+        updateVirtualPackets();
+
+        expirePackets();
 
-        pendingRemovals.forEach(livePackets::remove);
-        pendingRemovals.clear();
+        currentTick++;
+    }
 
-        livePackets.forEach(EntityInfraredPacket::updateLifetime);
+    @SubscribeEvent
+    public void onWorldUnload(final WorldEvent.Unload event) {
+        virtualPackets.removeIf(packet -> packet.getWorld() == event.getWorld());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void expirePackets() {
+        final Set<EntityInfraredPacket> slot = wheel[(int) (currentTick & (WHEEL_SIZE - 1))];
+        if (slot == null || slot.isEmpty()) {
+            return;
+        }
+
+        // Collect first, killing packets removes them from their slot.
+        for (final EntityInfraredPacket packet : slot) {
+            if (packet.getExpirationTick() <= currentTick) {
+                expiredPackets.add(packet);
+            }
+        }
+        expiredPackets.forEach(EntityInfraredPacket::setDead);
+        expiredPackets.clear();
+    }
+
+    private void updateVirtualPackets() {
+        // Swap lists, so packets sent by receivers are only advanced next tick.
+        final List<VirtualInfraredPacket> packets = virtualPackets;
+        virtualPackets = nextVirtualPackets;
+        for (final VirtualInfraredPacket packet : packets) {
+            if (packet.update()) {
+                virtualPackets.add(packet);
+            }
+        }
+        packets.clear();
+        nextVirtualPackets = packets;
     }
 
     // --------------------------------------------------------------------- //
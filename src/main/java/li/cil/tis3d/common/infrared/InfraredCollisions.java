@@ -0,0 +1,122 @@
+package li.cil.tis3d.common.infrared;
+
+import li.cil.tis3d.api.infrared.InfraredPacket;
+import li.cil.tis3d.api.infrared.InfraredReceiver;
+import li.cil.tis3d.common.capabilities.CapabilityInfraredReceiver;
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Collision logic shared by infrared packets, whether they travel as
+ * {@link li.cil.tis3d.common.entity.EntityInfraredPacket} or as
+ * {@link VirtualInfraredPacket}.
+ */
+public final class InfraredCollisions {
+    /**
+     * Find the closest block or entity an infrared packet collides with while
+     * traveling along the specified line.
+     *
+     * @param world   the world the packet travels in.
+     * @param start   the start of the line the packet travels along.
+     * @param target  the end of the line the packet travels along.
+     * @param bounds  the area swept by the packet, to look for entities in.
+     * @param exclude the entity representing the packet itself, if any.
+     * @return the closest hit, or <tt>null</tt> if there was none.
+     */
+    @Nullable
+    public static RayTraceResult checkCollision(final World world, final Vec3d start, final Vec3d target, final AxisAlignedBB bounds, @Nullable final Entity exclude) {
+        // Check for block collisions.
+        final RayTraceResult blockHit = InfraredPathCache.INSTANCE.raytrace(world, start, target);
+
+        // Check for entity collisions.
+        final RayTraceResult entityHit = checkEntityCollision(world, start, target, bounds, exclude);
+
+        // If we have both, pick the closer one.
+        if (blockHit != null && blockHit.typeOfHit != RayTraceResult.Type.MISS &&
+                entityHit != null && entityHit.typeOfHit != RayTraceResult.Type.MISS) {
+            if (blockHit.hitVec.squareDistanceTo(start) < entityHit.hitVec.squareDistanceTo(start)) {
+                return blockHit;
+            } else {
+                return entityHit;
+            }
+        } else if (blockHit != null) {
+            return blockHit;
+        } else if (entityHit != null) {
+            return entityHit;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Notify the block, tile entity or entity that was hit by an infrared
+     * packet, if it is interested in it.
+     *
+     * @param world  the world the packet travels in.
+     * @param packet the packet that hit something.
+     * @param hit    the information on the hit.
+     */
+    public static void notifyReceiver(final World world, final InfraredPacket packet, final RayTraceResult hit) {
+        switch (hit.typeOfHit) {
+            case BLOCK:
+                final Block block = world.getBlockState(hit.getBlockPos()).getBlock();
+                if (block instanceof InfraredReceiver) {
+                    ((InfraredReceiver) block).onInfraredPacket(packet, hit);
+                }
+                notifyCapabilityProvider(packet, hit, world.getTileEntity(hit.getBlockPos()));
+                break;
+            case ENTITY:
+                notifyCapabilityProvider(packet, hit, hit.entityHit);
+                break;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @Nullable
+    private static RayTraceResult checkEntityCollision(final World world, final Vec3d start, final Vec3d target, final AxisAlignedBB bounds, @Nullable final Entity exclude) {
+        RayTraceResult entityHit = null;
+        double bestSqrDistance = Double.POSITIVE_INFINITY;
+
+        final List<Entity> collisions = world.getEntitiesWithinAABBExcludingEntity(exclude, bounds);
+        for (final Entity entity : collisions) {
+            if (entity.canBeCollidedWith()) {
+                final AxisAlignedBB entityBounds = entity.getEntityBoundingBox();
+                final RayTraceResult hit = entityBounds.calculateIntercept(start, target);
+                if (hit != null) {
+                    final double sqrDistance = start.squareDistanceTo(hit.hitVec);
+                    if (sqrDistance < bestSqrDistance) {
+                        hit.entityHit = entity;
+                        hit.typeOfHit = RayTraceResult.Type.ENTITY;
+                        entityHit = hit;
+                        bestSqrDistance = sqrDistance;
+                    }
+                }
+            }
+        }
+
+        return entityHit;
+    }
+
+    private static void notifyCapabilityProvider(final InfraredPacket packet, final RayTraceResult hit, @Nullable final ICapabilityProvider provider) {
+        if (provider != null) {
+            final InfraredReceiver capability = provider.getCapability(CapabilityInfraredReceiver.INFRARED_RECEIVER_CAPABILITY, hit.sideHit);
+            if (capability != null) {
+                capability.onInfraredPacket(packet, hit);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private InfraredCollisions() {
+    }
+}
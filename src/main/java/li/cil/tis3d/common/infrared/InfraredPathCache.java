@@ -0,0 +1,303 @@
+package li.cil.tis3d.common.infrared;
+
+import li.cil.tis3d.util.Raytracing;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.IWorldEventListener;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches the blocks infrared packets collide with, per world.
+ * <p>
+ * Infrared links between fixed emitters and receivers send packets along
+ * the same lines over and over again, so instead of tracing through the
+ * blocks for each packet, the result is remembered by start and end of the
+ * line. Results are dropped when a block changes in, or a chunk is loaded
+ * or unloaded at, any chunk section the line passes through.
+ * <p>
+ * Only the block hit itself is cached. Receivers are still looked up on
+ * each hit, because modules in a casing may change without the block
+ * changing, and entities are still checked each time, since they move.
+ */
+public final class InfraredPathCache {
+    public static final InfraredPathCache INSTANCE = new InfraredPathCache();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The maximum number of paths cached per world. When exceeded, the cache
+     * of that world is cleared. Stable links re-populate it quickly.
+     */
+    private static final int MAX_PATHS_PER_WORLD = 4096;
+
+    private final Map<World, WorldCache> caches = new HashMap<>();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Find the first block collided with when traveling along the specified
+     * line, using {@link Raytracing#intersectIgnoringTransparent(World, BlockPos, Vec3d, Vec3d)},
+     * re-using a previous result if possible.
+     *
+     * @param world the world to shoot the ray in.
+     * @param start the start of the line to trace.
+     * @param end   the end of the line to trace.
+     * @return the first detected hit, or <tt>null</tt> if there was none.
+     */
+    @Nullable
+    public RayTraceResult raytrace(final World world, final Vec3d start, final Vec3d end) {
+        final WorldCache cache = caches.get(world);
+        if (cache == null) {
+            return Raytracing.raytrace(world, start, end, Raytracing::intersectIgnoringTransparent);
+        }
+
+        final PathKey key = new PathKey(start, end);
+        CachedPath path = cache.paths.get(key);
+        if (path == null) {
+            path = new CachedPath(key, Raytracing.raytrace(world, start, end, Raytracing::intersectIgnoringTransparent));
+            cache.add(path);
+        }
+
+        // Hand out a copy, receivers may do all sorts of things with it.
+        final RayTraceResult hit = path.hit;
+        if (hit == null) {
+            return null;
+        }
+        return new RayTraceResult(hit.typeOfHit, hit.hitVec, hit.sideHit, hit.getBlockPos());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @SubscribeEvent
+    public void onWorldLoad(final WorldEvent.Load event) {
+        final World world = event.getWorld();
+        if (world.isRemote) {
+            return;
+        }
+
+        final WorldCache cache = new WorldCache();
+        caches.put(world, cache);
+        world.addEventListener(cache);
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(final WorldEvent.Unload event) {
+        final WorldCache cache = caches.remove(event.getWorld());
+        if (cache != null) {
+            event.getWorld().removeEventListener(cache);
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(final ChunkEvent.Load event) {
+        invalidateChunk(event.getWorld(), event.getChunk());
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(final ChunkEvent.Unload event) {
+        invalidateChunk(event.getWorld(), event.getChunk());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void invalidateChunk(final World world, final Chunk chunk) {
+        final WorldCache cache = caches.get(world);
+        if (cache != null) {
+            for (int sectionY = 0; sectionY < 16; sectionY++) {
+                cache.invalidate(sectionKey(chunk.xPosition, sectionY, chunk.zPosition));
+            }
+        }
+    }
+
+    private static long sectionKey(final int sectionX, final int sectionY, final int sectionZ) {
+        return ((long) sectionX & 0x3FFFFF) << 42 | ((long) sectionY & 0xFFFFF) << 22 | ((long) sectionZ & 0x3FFFFF);
+    }
+
+    private static final class PathKey {
+        private final double startX, startY, startZ;
+        private final double endX, endY, endZ;
+
+        PathKey(final Vec3d start, final Vec3d end) {
+            startX = start.xCoord;
+            startY = start.yCoord;
+            startZ = start.zCoord;
+            endX = end.xCoord;
+            endY = end.yCoord;
+            endZ = end.zCoord;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PathKey)) {
+                return false;
+            }
+            final PathKey other = (PathKey) obj;
+            return startX == other.startX && startY == other.startY && startZ == other.startZ &&
+                    endX == other.endX && endY == other.endY && endZ == other.endZ;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Double.hashCode(startX);
+            result = 31 * result + Double.hashCode(startY);
+            result = 31 * result + Double.hashCode(startZ);
+            result = 31 * result + Double.hashCode(endX);
+            result = 31 * result + Double.hashCode(endY);
+            result = 31 * result + Double.hashCode(endZ);
+            return result;
+        }
+    }
+
+    private static final class CachedPath {
+        private final PathKey key;
+        @Nullable
+        private final RayTraceResult hit;
+
+        /**
+         * The keys of all chunk sections the path may depend on, i.e. those
+         * touched by the bounds of the path, grown by one block to also
+         * cover the block hit, which may lie in a neighboring section.
+         */
+        private final long[] sections;
+
+        CachedPath(final PathKey key, @Nullable final RayTraceResult hit) {
+            this.key = key;
+            this.hit = hit;
+
+            final int minX = MathHelper.floor(Math.min(key.startX, key.endX) - 1) >> 4;
+            final int minY = MathHelper.floor(Math.min(key.startY, key.endY) - 1) >> 4;
+            final int minZ = MathHelper.floor(Math.min(key.startZ, key.endZ) - 1) >> 4;
+            final int maxX = MathHelper.floor(Math.max(key.startX, key.endX) + 1) >> 4;
+            final int maxY = MathHelper.floor(Math.max(key.startY, key.endY) + 1) >> 4;
+            final int maxZ = MathHelper.floor(Math.max(key.startZ, key.endZ) + 1) >> 4;
+
+            sections = new long[(maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1)];
+            int index = 0;
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        sections[index++] = sectionKey(x, y, z);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The paths cached for a single world. Doubles as the listener notified
+     * of block changes in that world.
+     */
+    private static final class WorldCache implements IWorldEventListener {
+        private final Map<PathKey, CachedPath> paths = new HashMap<>();
+        private final Map<Long, Set<CachedPath>> pathsBySection = new HashMap<>();
+
+        void add(final CachedPath path) {
+            if (paths.size() >= MAX_PATHS_PER_WORLD) {
+                paths.clear();
+                pathsBySection.clear();
+            }
+
+            paths.put(path.key, path);
+            for (final long section : path.sections) {
+                pathsBySection.computeIfAbsent(section, s -> new HashSet<>()).add(path);
+            }
+        }
+
+        void invalidate(final long section) {
+            final Set<CachedPath> invalidated = pathsBySection.remove(section);
+            if (invalidated == null) {
+                return;
+            }
+
+            for (final CachedPath path : invalidated) {
+                paths.remove(path.key);
+                for (final long otherSection : path.sections) {
+                    final Set<CachedPath> otherPaths = pathsBySection.get(otherSection);
+                    if (otherPaths != null && otherPaths.remove(path) && otherPaths.isEmpty()) {
+                        pathsBySection.remove(otherSection);
+                    }
+                }
+            }
+        }
+
+        // --------------------------------------------------------------------- //
+        // IWorldEventListener
+
+        @Override
+        public void notifyBlockUpdate(final World world, final BlockPos pos, final IBlockState oldState, final IBlockState newState, final int flags) {
+            // Also called to sync tile entities, ignore those.
+            if (oldState != newState) {
+                invalidate(sectionKey(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+            }
+        }
+
+        @Override
+        public void notifyLightSet(final BlockPos pos) {
+        }
+
+        @Override
+        public void markBlockRangeForRenderUpdate(final int x1, final int y1, final int z1, final int x2, final int y2, final int z2) {
+        }
+
+        @Override
+        public void playSoundToAllNearExcept(@Nullable final EntityPlayer player, final SoundEvent sound, final SoundCategory category, final double x, final double y, final double z, final float volume, final float pitch) {
+        }
+
+        @Override
+        public void playRecord(final SoundEvent sound, final BlockPos pos) {
+        }
+
+        @Override
+        public void spawnParticle(final int particleId, final boolean ignoreRange, final double x, final double y, final double z, final double xSpeed, final double ySpeed, final double zSpeed, final int... parameters) {
+        }
+
+        @Override
+        public void spawnParticle(final int particleId, final boolean ignoreRange, final boolean minimizeLevel, final double x, final double y, final double z, final double xSpeed, final double ySpeed, final double zSpeed, final int... parameters) {
+        }
+
+        @Override
+        public void onEntityAdded(final Entity entity) {
+        }
+
+        @Override
+        public void onEntityRemoved(final Entity entity) {
+        }
+
+        @Override
+        public void broadcastSound(final int soundId, final BlockPos pos, final int data) {
+        }
+
+        @Override
+        public void playEvent(final EntityPlayer player, final int type, final BlockPos pos, final int data) {
+        }
+
+        @Override
+        public void sendBlockBreakProgress(final int breakerId, final BlockPos pos, final int progress) {
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private InfraredPathCache() {
+    }
+}
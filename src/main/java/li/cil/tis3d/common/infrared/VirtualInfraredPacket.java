@@ -0,0 +1,262 @@
+package li.cil.tis3d.common.infrared;
+
+import li.cil.tis3d.api.infrared.InfraredPacket;
+import li.cil.tis3d.common.entity.EntityInfraredPacket;
+import li.cil.tis3d.common.network.Network;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+
+/**
+ * Represents a single value in transmission, without the overhead of an
+ * entity. These are advanced in batches by {@link li.cil.tis3d.common.event.TickHandlerInfraredPacket}
+ * at the end of each server tick.
+ * <p>
+ * Packets travel the same distance per tick, live for the same number of
+ * ticks and collide with the same things as {@link EntityInfraredPacket}s.
+ * Only when a packet has to interact with the world the way an entity does,
+ * i.e. when entering a portal, it is replaced with an actual entity.
+ */
+public final class VirtualInfraredPacket implements InfraredPacket {
+    /**
+     * Half the size of the packet, for finding entities it collides with.
+     */
+    private static final double HALF_SIZE = 0.125;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The world the packet travels in.
+     */
+    private final World world;
+
+    /**
+     * The current position of the packet.
+     */
+    private double posX, posY, posZ;
+
+    /**
+     * The distance traveled by the packet per tick, along each axis.
+     */
+    private double motionX, motionY, motionZ;
+
+    /**
+     * The number of ticks the packet keeps traveling.
+     */
+    private int lifetime;
+
+    /**
+     * The value carried by this packet.
+     */
+    private final short value;
+
+    /**
+     * Whether the packet was consumed by a collision (and not redirected).
+     */
+    private boolean isDead;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Sets up the packet's starting position, velocity and value carried.
+     *
+     * @param world     the world the packet travels in.
+     * @param start     the position of the block that spawned the packet.
+     * @param direction the normalized direction in which the packet was emitted.
+     * @param value     the value the packet carries.
+     */
+    public VirtualInfraredPacket(final World world, final Vec3d start, final Vec3d direction, final short value) {
+        this.world = world;
+        this.posX = start.xCoord;
+        this.posY = start.yCoord;
+        this.posZ = start.zCoord;
+        this.motionX = direction.xCoord * EntityInfraredPacket.TRAVEL_SPEED;
+        this.motionY = direction.yCoord * EntityInfraredPacket.TRAVEL_SPEED;
+        this.motionZ = direction.zCoord * EntityInfraredPacket.TRAVEL_SPEED;
+        // Entities lose one tick of lifetime in the tick they are spawned in,
+        // before they move for the first time.
+        this.lifetime = EntityInfraredPacket.DEFAULT_LIFETIME - 1;
+        this.value = value;
+    }
+
+    /**
+     * The world the packet travels in.
+     *
+     * @return the world of the packet.
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Advance the packet by one tick, checking for collisions along the way.
+     *
+     * @return <tt>true</tt> if the packet keeps traveling; <tt>false</tt> if it is done.
+     */
+    public boolean update() {
+        if (lifetime < 1 || !world.isBlockLoaded(new BlockPos(posX, posY, posZ))) {
+            return false;
+        }
+
+        // Check for collisions and handle them.
+        final RayTraceResult hit = checkCollisions();
+
+        // Emit some particles.
+        emitParticles(hit);
+
+        if (isDead) {
+            return false;
+        }
+
+        // Update position.
+        posX += motionX;
+        posY += motionY;
+        posZ += motionZ;
+
+        return --lifetime > 0;
+    }
+
+    // --------------------------------------------------------------------- //
+    // InfraredPacket
+
+    @Override
+    public short getPacketValue() {
+        return value;
+    }
+
+    @Override
+    public Vec3d getPacketPosition() {
+        return new Vec3d(posX, posY, posZ);
+    }
+
+    @Override
+    public Vec3d getPacketDirection() {
+        return new Vec3d(motionX, motionY, motionZ).normalize();
+    }
+
+    @Override
+    public void redirectPacket(final Vec3d position, final Vec3d direction, final int addedLifetime) {
+        lifetime += addedLifetime;
+        if (lifetime > 0) {
+            // Revive!
+            isDead = false;
+
+            // Apply new position, clamped to the distance traveled per tick,
+            // like entity packets.
+            final Vec3d oldPos = getPacketPosition();
+            final Vec3d delta = position.subtract(oldPos);
+            final double length = delta.lengthVector();
+            if (length > EntityInfraredPacket.TRAVEL_SPEED) {
+                final Vec3d clamped = oldPos.add(delta.scale(EntityInfraredPacket.TRAVEL_SPEED / length));
+                posX = clamped.xCoord;
+                posY = clamped.yCoord;
+                posZ = clamped.zCoord;
+            } else {
+                posX = position.xCoord;
+                posY = position.yCoord;
+                posZ = position.zCoord;
+            }
+
+            // Apply new direction.
+            final Vec3d motionVec = direction.normalize();
+            motionX = motionVec.xCoord * EntityInfraredPacket.TRAVEL_SPEED;
+            motionY = motionVec.yCoord * EntityInfraredPacket.TRAVEL_SPEED;
+            motionZ = motionVec.zCoord * EntityInfraredPacket.TRAVEL_SPEED;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void emitParticles(@Nullable final RayTraceResult hit) {
+        final double t = world.rand.nextDouble();
+
+        final double dx, dy, dz;
+        if (hit == null || hit.hitVec == null) {
+            dx = motionX;
+            dy = motionY;
+            dz = motionZ;
+        } else {
+            dx = hit.hitVec.xCoord - posX;
+            dy = hit.hitVec.yCoord - posY;
+            dz = hit.hitVec.zCoord - posZ;
+        }
+
+        final double x = posX + dx * t;
+        final double y = posY + dy * t;
+        final double z = posZ + dz * t;
+
+        Network.sendInfraredEffect(world, x, y, z);
+    }
+
+    @Nullable
+    private RayTraceResult checkCollisions() {
+        final Vec3d start = new Vec3d(posX, posY, posZ);
+        final Vec3d target = start.addVector(motionX, motionY, motionZ);
+        final AxisAlignedBB bounds = new AxisAlignedBB(
+                posX - HALF_SIZE, posY - HALF_SIZE, posZ - HALF_SIZE,
+                posX + HALF_SIZE, posY + HALF_SIZE, posZ + HALF_SIZE).addCoord(motionX, motionY, motionZ);
+
+        final RayTraceResult hit = InfraredCollisions.checkCollision(world, start, target, bounds, null);
+        if (hit != null) {
+            // For travel distance adjustment, see below.
+            final Vec3d oldPos = getPacketPosition();
+
+            switch (hit.typeOfHit) {
+                case BLOCK:
+                    onBlockCollision(hit);
+                    break;
+                case ENTITY:
+                    onEntityCollision(hit);
+                    break;
+                default:
+                    return null;
+            }
+
+            // Offset to compensate position adjustments. This way the total
+            // distance the packet travels per tick stays constant, even if
+            // it was moved around by a packet handler.
+            final double delta = getPacketPosition().subtract(oldPos).lengthVector() / EntityInfraredPacket.TRAVEL_SPEED;
+            posX -= motionX * delta;
+            posY -= motionY * delta;
+            posZ -= motionZ * delta;
+        }
+        return hit;
+    }
+
+    private void onBlockCollision(final RayTraceResult hit) {
+        // Just in case...
+        final BlockPos pos = hit.getBlockPos();
+        if (!world.isBlockLoaded(pos)) {
+            return;
+        }
+
+        // Traveling through a portal? Only entities can do that, so become one.
+        if (world.getBlockState(pos).getBlock() == Blocks.PORTAL) {
+            final EntityInfraredPacket entity = new EntityInfraredPacket(world);
+            entity.configure(getPacketPosition(), getPacketDirection(), value, lifetime);
+            world.spawnEntity(entity);
+            entity.setPortal(pos);
+            isDead = true;
+            return;
+        }
+
+        // First things first, we ded.
+        isDead = true;
+
+        // Next up, notify receiver, if any.
+        InfraredCollisions.notifyReceiver(world, this, hit);
+    }
+
+    private void onEntityCollision(final RayTraceResult hit) {
+        // First things first, we ded.
+        isDead = true;
+
+        // Next up, notify receiver, if any.
+        InfraredCollisions.notifyReceiver(world, this, hit);
+    }
+}
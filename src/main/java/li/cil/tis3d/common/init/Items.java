@@ -86,6 +86,7 @@ public final class Items {
         addModuleRecipe(Constants.NAME_ITEM_MODULE_BUNDLED_REDSTONE, net.minecraft.init.Items.COMPARATOR);
         addModuleRecipe(Constants.NAME_ITEM_MODULE_DISPLAY, prism);
         addModuleRecipe(Constants.NAME_ITEM_MODULE_EXECUTION, "ingotGold");
+        addModuleRecipe(Constants.NAME_ITEM_MODULE_EXTENDED_MEMORY, "blockEmerald");
         addModuleRecipe(Constants.NAME_ITEM_MODULE_INFRARED, net.minecraft.init.Items.SPIDER_EYE);
         addModuleRecipe(Constants.NAME_ITEM_MODULE_KEYPAD, net.minecraft.init.Blocks.STONE_BUTTON);
         addModuleRecipe(Constants.NAME_ITEM_MODULE_RANDOM, net.minecraft.init.Items.ENDER_PEARL);
@@ -5,6 +5,7 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.api.module.ModuleProvider;
 import li.cil.tis3d.common.Constants;
+import li.cil.tis3d.common.machine.CasingImpl;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.MessageCasingInventory;
 import li.cil.tis3d.common.tileentity.TileEntityCasing;
@@ -93,7 +94,7 @@ public final class InventoryCasing extends Inventory implements ISidedInventory
             final NBTTagCompound moduleData;
             if (module != null) {
                 module.onInstalled(stack);
-                module.writeToNBT(moduleData = new NBTTagCompound());
+                CasingImpl.writeModuleToNBTForClient(module, moduleData = new NBTTagCompound());
             } else {
                 moduleData = null;
             }
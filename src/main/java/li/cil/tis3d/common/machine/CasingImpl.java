@@ -10,6 +10,7 @@ import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.api.module.ModuleProvider;
 import li.cil.tis3d.api.module.traits.Redstone;
 import li.cil.tis3d.common.init.Items;
+import li.cil.tis3d.common.module.ClientStateAware;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.tileentity.TileEntityCasing;
 import li.cil.tis3d.common.tileentity.TileEntityController;
@@ -23,6 +24,7 @@ import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -38,6 +40,12 @@ public final class CasingImpl implements Casing {
      */
     private final Module[] modules = new Module[Face.VALUES.length];
 
+    /**
+     * The item stacks the installed {@link Module}s were created for. Used
+     * when loading to decide whether an existing module can be kept.
+     */
+    private final ItemStack[] moduleStacks = new ItemStack[Face.VALUES.length];
+
     /**
      * The key the casing is currently locked with. If this is set, players
      * cannot add or remove modules from the casing. A key with the correct
@@ -58,10 +66,21 @@ public final class CasingImpl implements Casing {
      */
     private final TileEntityCasing tileEntity;
 
+    /**
+     * Whether state changed since we last marked our tile entity dirty.
+     * <p>
+     * Modules may mark their casing dirty every single step, and going through
+     * {@link net.minecraft.tileentity.TileEntity#markDirty()} each time is not
+     * exactly cheap (chunk lookup, comparator updates). So we just remember it
+     * here and let the controller flush it once per tick via {@link #flushDirty()}.
+     */
+    private boolean isDirty;
+
     // --------------------------------------------------------------------- //
 
     public CasingImpl(final TileEntityCasing tileEntity) {
         this.tileEntity = tileEntity;
+        Arrays.fill(moduleStacks, ItemStack.EMPTY);
     }
 
     /**
@@ -111,13 +130,16 @@ public final class CasingImpl implements Casing {
     }
 
     /**
-     * Advance the logic of all modules by calling {@link Module#step()} on them.
+     * Mark the tile entity hosting this casing dirty if any changes were
+     * flagged via {@link #markDirty()} since the last call to this.
+     * <p>
+     * Called by the controller once per tick, and when the casing loses its
+     * controller, to make sure no pending changes get lost.
      */
-    public void stepModules() {
-        for (final Module module : modules) {
-            if (module != null) {
-                module.step();
-            }
+    public void flushDirty() {
+        if (isDirty) {
+            isDirty = false;
+            tileEntity.markDirty();
         }
     }
 
@@ -149,6 +171,7 @@ public final class CasingImpl implements Casing {
 
         // Apply new module before adjust remaining state.
         modules[face.ordinal()] = module;
+        moduleStacks[face.ordinal()] = module != null ? tileEntity.getStackInSlot(face.ordinal()) : ItemStack.EMPTY;
 
         // Reset redstone output if the previous module was redstone capable.
         if (hadRedstone) {
@@ -243,25 +266,31 @@ public final class CasingImpl implements Casing {
         for (int index = 0; index < tileEntity.getSizeInventory(); index++) {
             final ItemStack stack = tileEntity.getStackInSlot(index);
             if (stack.isEmpty()) {
-                if (modules[index] != null) {
-                    modules[index].onDisposed();
-                }
-                modules[index] = null;
+                disposeModule(index);
                 continue;
             }
 
             final Face face = Face.VALUES[index];
             final ModuleProvider provider = ModuleAPI.getProviderFor(stack, tileEntity, face);
             if (provider == null) {
-                if (modules[index] != null) {
-                    modules[index].onDisposed();
-                }
-                modules[index] = null;
+                disposeModule(index);
+                continue;
+            }
+
+            // Keep existing modules created by the same provider for the same
+            // item, only updating their state below. This is the usual case for
+            // update packets on the client, and avoids throwing away any client
+            // side resources, such as textures, the modules may hold.
+            if (modules[index] != null &&
+                    ItemStack.areItemsEqual(moduleStacks[index], stack) &&
+                    ModuleAPI.getProviderFor(moduleStacks[index], tileEntity, face) == provider) {
+                moduleStacks[index] = stack;
                 continue;
             }
 
-            final Module module = provider.createModule(stack, tileEntity, face);
-            modules[index] = module;
+            disposeModule(index);
+            modules[index] = provider.createModule(stack, tileEntity, face);
+            moduleStacks[index] = stack;
         }
 
         final NBTTagList modulesNbt = nbt.getTagList(TAG_MODULES, Constants.NBT.TAG_COMPOUND);
@@ -285,16 +314,43 @@ public final class CasingImpl implements Casing {
      * @param nbt the tag to write the data to.
      */
     public void writeToNBT(final NBTTagCompound nbt) {
-        final NBTTagList modulesNbt = new NBTTagList();
-        for (final Module module : modules) {
-            final NBTTagCompound moduleNbt = new NBTTagCompound();
-            if (module != null) {
-                module.writeToNBT(moduleNbt);
-            }
-            modulesNbt.appendTag(moduleNbt);
+        writeToNBT(nbt, false);
+    }
+
+    /**
+     * Write the state of all modules needed by clients to the specified NBT
+     * tag. Like {@link #writeToNBT(NBTTagCompound)}, except that modules
+     * implementing {@link ClientStateAware} only write their client state.
+     *
+     * @param nbt the tag to write the data to.
+     */
+    public void writeToNBTForClient(final NBTTagCompound nbt) {
+        writeToNBT(nbt, true);
+    }
+
+    /**
+     * Write the state of the specified module needed by clients to the
+     * specified NBT tag, see {@link #writeToNBTForClient(NBTTagCompound)}.
+     *
+     * @param module the module to write the state of.
+     * @param nbt    the tag to write the data to.
+     */
+    public static void writeModuleToNBTForClient(final Module module, final NBTTagCompound nbt) {
+        if (module instanceof ClientStateAware) {
+            ((ClientStateAware) module).writeClientStateToNBT(nbt);
+        } else {
+            module.writeToNBT(nbt);
         }
-        nbt.setTag(TAG_MODULES, modulesNbt);
+    }
 
+    /**
+     * Write only the lock state to the specified NBT tag, leaving out all
+     * module state. Loading this via {@link #readFromNBT(NBTTagCompound)}
+     * will set up the installed modules, but leave their state untouched.
+     *
+     * @param nbt the tag to write the data to.
+     */
+    public void writeLockToNBT(final NBTTagCompound nbt) {
         if (lock != null) {
             nbt.setLong(TAG_KEY_MS, lock.getMostSignificantBits());
             nbt.setLong(TAG_KEY_LS, lock.getLeastSignificantBits());
@@ -316,7 +372,13 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void markDirty() {
-        tileEntity.markDirty();
+        final TileEntityController controller = tileEntity.getController();
+        if (controller != null && controller.isUpdating()) {
+            // Controller will flush this at the end of its update.
+            isDirty = true;
+        } else {
+            tileEntity.markDirty();
+        }
     }
 
     @Override
@@ -367,6 +429,37 @@ public final class CasingImpl implements Casing {
 
     // --------------------------------------------------------------------- //
 
+    private void writeToNBT(final NBTTagCompound nbt, final boolean forClient) {
+        final NBTTagList modulesNbt = new NBTTagList();
+        for (final Module module : modules) {
+            final NBTTagCompound moduleNbt = new NBTTagCompound();
+            if (module != null) {
+                if (forClient) {
+                    writeModuleToNBTForClient(module, moduleNbt);
+                } else {
+                    module.writeToNBT(moduleNbt);
+                }
+            }
+            modulesNbt.appendTag(moduleNbt);
+        }
+        nbt.setTag(TAG_MODULES, modulesNbt);
+
+        writeLockToNBT(nbt);
+    }
+
+    /**
+     * Dispose the module in the specified slot, if any, and clear the slot.
+     *
+     * @param index the index of the slot to clear.
+     */
+    private void disposeModule(final int index) {
+        if (modules[index] != null) {
+            modules[index].onDisposed();
+        }
+        modules[index] = null;
+        moduleStacks[index] = ItemStack.EMPTY;
+    }
+
     /**
      * Read a stored key from the specified stack.
      *
@@ -14,4 +14,18 @@ public interface PipeHost {
     BlockPos getPipeHostPosition();
 
     void onWriteComplete(Face sendingFace, Port sendingPort);
+
+    /**
+     * Called when a read operation was started on a pipe of this host.
+     *
+     * @param pipe the pipe the read operation was started on.
+     */
+    void onBeginRead(PipeImpl pipe);
+
+    /**
+     * Called when a write operation was started on a pipe of this host.
+     *
+     * @param pipe the pipe the write operation was started on.
+     */
+    void onBeginWrite(PipeImpl pipe);
 }
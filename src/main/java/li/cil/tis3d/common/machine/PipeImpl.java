@@ -1,5 +1,6 @@
 package li.cil.tis3d.common.machine;
 
+import io.netty.buffer.ByteBuf;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
@@ -58,6 +59,8 @@ public final class PipeImpl implements Pipe {
         FLUSHING
     }
 
+    private static final State[] STATES = State.values();
+
     // NBT tag names.
     private static final String TAG_READ_STATE = "readState";
     private static final String TAG_WRITE_STATE = "writeState";
@@ -73,16 +76,28 @@ public final class PipeImpl implements Pipe {
      */
     private final Face receivingFace, sendingFace;
 
+    /**
+     * The output port of this pipe in the owning {@link Casing}.
+     */
+    private final Port receivingPort;
+
     /**
      * The input port of this pipe in the owning {@link Casing}.
      */
     private final Port sendingPort;
 
+    /**
+     * Whether the pipe is currently in the list of pipes to step of the
+     * controller driving its host, see {@link #schedule()}.
+     */
+    private boolean isScheduled;
+
     // --------------------------------------------------------------------- //
 
-    public PipeImpl(final PipeHost host, final Face receivingFace, final Face sendingFace, final Port sendingPort) {
+    public PipeImpl(final PipeHost host, final Face receivingFace, final Port receivingPort, final Face sendingFace, final Port sendingPort) {
         this.host = host;
         this.receivingFace = receivingFace;
+        this.receivingPort = receivingPort;
         this.sendingFace = sendingFace;
         this.sendingPort = sendingPort;
     }
@@ -103,6 +118,75 @@ public final class PipeImpl implements Pipe {
         }
     }
 
+    /**
+     * Whether calling {@link #step()} would change the state of the pipe.
+     * <p>
+     * Pipes only need stepping after a read or write operation was started
+     * on them, until both sides are ready to transfer.
+     *
+     * @return <tt>true</tt> if the pipe needs stepping; <tt>false</tt> otherwise.
+     */
+    public boolean needsStep() {
+        return writeState == State.BUSY || readState == State.BUSY ||
+               (writeState == State.READY && readState == State.READY);
+    }
+
+    /**
+     * Mark the pipe as scheduled for stepping.
+     *
+     * @return <tt>true</tt> if the pipe was not scheduled before; <tt>false</tt> otherwise.
+     */
+    public boolean schedule() {
+        if (isScheduled) {
+            return false;
+        }
+        isScheduled = true;
+        return true;
+    }
+
+    /**
+     * Mark the pipe as no longer scheduled for stepping.
+     */
+    public void unschedule() {
+        isScheduled = false;
+    }
+
+    /**
+     * The face of the host this pipe receives data on.
+     *
+     * @return the receiving face of the pipe.
+     */
+    public Face getReceivingFace() {
+        return receivingFace;
+    }
+
+    /**
+     * The port on the receiving face of the host this pipe receives data on.
+     *
+     * @return the receiving port of the pipe.
+     */
+    public Port getReceivingPort() {
+        return receivingPort;
+    }
+
+    /**
+     * The face of the host this pipe sends data from.
+     *
+     * @return the sending face of the pipe.
+     */
+    public Face getSendingFace() {
+        return sendingFace;
+    }
+
+    /**
+     * The port on the sending face of the host this pipe sends data from.
+     *
+     * @return the sending port of the pipe.
+     */
+    public Port getSendingPort() {
+        return sendingPort;
+    }
+
     public void readFromNBT(final NBTTagCompound nbt) {
         readState = EnumUtils.readFromNBT(State.class, TAG_READ_STATE, nbt);
         writeState = EnumUtils.readFromNBT(State.class, TAG_WRITE_STATE, nbt);
@@ -115,6 +199,30 @@ public final class PipeImpl implements Pipe {
         nbt.setShort(TAG_VALUE, value);
     }
 
+    /**
+     * Restore the pipe's state from its packed representation, as written
+     * by {@link #writeToBytes(ByteBuf)}.
+     *
+     * @param data the buffer to read the state from.
+     */
+    public void readFromBytes(final ByteBuf data) {
+        final int states = data.readUnsignedByte();
+        readState = STATES[(states & 0b11) % STATES.length];
+        writeState = STATES[((states >>> 2) & 0b11) % STATES.length];
+        value = data.readShort();
+    }
+
+    /**
+     * Write the pipe's state in packed form, i.e. both states in a single
+     * byte followed by the value, three bytes total.
+     *
+     * @param data the buffer to write the state to.
+     */
+    public void writeToBytes(final ByteBuf data) {
+        data.writeByte(readState.ordinal() | (writeState.ordinal() << 2));
+        data.writeShort(value);
+    }
+
     // --------------------------------------------------------------------- //
     // Pipe
 
@@ -125,6 +233,7 @@ public final class PipeImpl implements Pipe {
         }
         writeState = State.BUSY;
         this.value = value;
+        host.onBeginWrite(this);
     }
 
     @Override
@@ -147,6 +256,7 @@ public final class PipeImpl implements Pipe {
             throw new IllegalStateException("Trying to write to a busy pipe. Check isReading().");
         }
         readState = State.BUSY;
+        host.onBeginRead(this);
     }
 
     @Override
@@ -0,0 +1,22 @@
+package li.cil.tis3d.common.module;
+
+import li.cil.tis3d.api.module.Module;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Modules implementing this interface send a reduced state to clients, instead
+ * of the full state written via {@link Module#writeToNBT(NBTTagCompound)}.
+ * <p>
+ * Useful for modules storing large amounts of data of which clients only need
+ * a small part, e.g. for rendering.
+ */
+public interface ClientStateAware extends Module {
+    /**
+     * Write the state of the module needed by clients. This is loaded on the
+     * client via {@link Module#readFromNBT(NBTTagCompound)}, so the module has
+     * to be able to tell it apart from its full state.
+     *
+     * @param nbt the tag to write the data to.
+     */
+    void writeClientStateToNBT(final NBTTagCompound nbt);
+}
@@ -1,19 +1,20 @@
 package li.cil.tis3d.common.module;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleRotatable;
 import li.cil.tis3d.api.util.RenderUtil;
+import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.util.ColorUtils;
 import li.cil.tis3d.util.EnumUtils;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.texture.TextureUtil;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.world.World;
+import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
@@ -24,11 +25,11 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
     // Persisted data
 
     /**
-     * The uncompressed image as RGBA, for faster application of draw calls
-     * and uploading to the GPU. Also kept on the server to allow sending
-     * current state to newly connected/coming closer clients.
+     * The image as palette indices, one per pixel, zero for cleared pixels,
+     * otherwise the color index plus one. Also kept on the server to allow
+     * sending current state to newly connected/coming closer clients.
      */
-    private final int[] image = new int[RESOLUTION * RESOLUTION];
+    private final byte[] image = new byte[RESOLUTION * RESOLUTION];
 
     /**
      * The current input state, i.e. what value we're currently reading.
@@ -66,18 +67,75 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
     // intuitive that the usable area start in the inner, black part.
     private static final int MARGIN = 2;
 
+    // Size of the bit mask of set pixels at the start of the packed image.
+    private static final int PACKED_MASK_SIZE = RESOLUTION * RESOLUTION / 8;
+
     // NBT tag names.
-    private static final String TAG_IMAGE = "image";
+    private static final String TAG_IMAGE = "image"; // Legacy, RGBA per pixel.
+    private static final String TAG_IMAGE_PACKED = "imagePacked";
     private static final String TAG_STATE = "state";
     private static final String TAG_DRAW_CALL = "drawCall";
 
+    // Maximum length of a run of equal pixels when sending changed regions.
+    private static final int MAX_RUN_LENGTH = 256;
+
+    // Maximum number of draw calls to keep before applying them to the image.
+    private static final int MAX_LOG_LENGTH = 32;
+
+    // Maximum number of draw calls to send to clients at once. If more draw
+    // calls are pending the changed region of the image is sent instead.
+    private static final int MAX_BATCH_LENGTH = 8;
+
     // Data packet types.
-    private static final byte DATA_TYPE_CLEAR = 0;
+    private static final byte DATA_TYPE_UPDATE = 0;
+
+    // Encodings of image updates sent to clients.
+    private static final byte ENCODING_REGION = 0;
+    private static final byte ENCODING_DRAW_CALLS = 1;
+
+    /**
+     * Draw calls not yet applied to the image (server only). Applied lazily,
+     * when the image is needed for saving or sending it, or the log is full.
+     * Draw calls are stored as packed by {@link #packDrawCall}.
+     */
+    private final int[] drawCallLog = new int[MAX_LOG_LENGTH];
+    private int drawCallLogLength;
+
+    /**
+     * Draw calls completed since data was last sent to clients, as packed by
+     * {@link #packDrawCall}, unless {@link #isBatchRasterized} is set.
+     */
+    private final int[] drawCallBatch = new int[MAX_BATCH_LENGTH];
+    private int drawCallBatchLength;
+
+    /**
+     * Whether too many draw calls completed since data was last sent to
+     * clients, so that the changed region of the image is sent instead.
+     */
+    private boolean isBatchRasterized;
+
+    /**
+     * The region of the image changed since data was last sent to clients,
+     * as minimum inclusive and maximum exclusive coordinates.
+     */
+    private int dirtyX0, dirtyY0, dirtyX1, dirtyY1;
+
+    /**
+     * The {@link Network#getFlushCount(World)} when we last queued changes
+     * for sending. If it is still the same the queued data has not been
+     * sent yet, so further changes get merged into it.
+     */
+    private int dirtyFlushCount = -1;
 
     /**
      * The ID of the uploaded texture on the GPU (client only).
      */
     private int glTextureId;
+    /**
+     * The image as packed by {@link #packImage()} when last saved, reused
+     * until the image changes again, so idle displays are cheap to save.
+     */
+    private byte[] packedImage;
 
     // --------------------------------------------------------------------- //
 
@@ -97,10 +155,12 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
 
     @Override
     public void onDisabled() {
-        Arrays.fill(image, 0);
+        Arrays.fill(image, (byte) 0);
+        drawCallLogLength = 0;
+        packedImage = null;
         state = State.COLOR;
 
-        sendClear();
+        markChanged(packDrawCall(0, 0, RESOLUTION, RESOLUTION, 0));
     }
 
     @Override
@@ -113,13 +173,39 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
 
     @Override
     public void onData(final ByteBuf data) {
-        if (data.readBoolean()) {
-            Arrays.fill(image, 0);
+        packedImage = null;
+
+        if (data.readByte() == ENCODING_DRAW_CALLS) {
+            int x0 = RESOLUTION, y0 = RESOLUTION, x1 = 0, y1 = 0;
+            final int count = data.readUnsignedByte();
+            for (int i = 0; i < count; i++) {
+                final int drawCall = packDrawCall(data.readUnsignedByte(), data.readUnsignedByte(), data.readUnsignedByte(), data.readUnsignedByte(), data.readUnsignedByte());
+                fill(drawCall);
+                x0 = Math.min(x0, getX0(drawCall));
+                y0 = Math.min(y0, getY0(drawCall));
+                x1 = Math.max(x1, getX1(drawCall));
+                y1 = Math.max(y1, getY1(drawCall));
+            }
+            uploadRegion(x0, y0, x1, y1);
         } else {
-            data.readBytes(drawCall);
-            applyDrawCall(drawCall);
+            final int x0 = data.readUnsignedByte();
+            final int y0 = data.readUnsignedByte();
+            final int x1 = Math.min(RESOLUTION, x0 + data.readUnsignedByte());
+            final int y1 = Math.min(RESOLUTION, y0 + data.readUnsignedByte());
+            int x = x0, y = y0;
+            while (data.isReadable(2) && y < y1) {
+                final int length = data.readUnsignedByte() + 1;
+                final byte value = data.readByte();
+                for (int i = 0; i < length && y < y1; i++) {
+                    image[y * RESOLUTION + x] = value;
+                    if (++x >= x1) {
+                        x = x0;
+                        y++;
+                    }
+                }
+            }
+            uploadRegion(x0, y0, x1, y1);
         }
-        TextureUtil.uploadTexture(getGlTextureId(), image, RESOLUTION, RESOLUTION);
     }
 
     @SideOnly(Side.CLIENT)
@@ -140,20 +226,37 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
     public void readFromNBT(final NBTTagCompound nbt) {
         super.readFromNBT(nbt);
 
-        final int[] imageNbt = nbt.getIntArray(TAG_IMAGE);
-        System.arraycopy(imageNbt, 0, image, 0, Math.min(imageNbt.length, image.length));
+        packedImage = null;
+        drawCallLogLength = 0;
+        if (nbt.hasKey(TAG_IMAGE_PACKED, Constants.NBT.TAG_BYTE_ARRAY)) {
+            unpackImage(nbt.getByteArray(TAG_IMAGE_PACKED));
+        } else {
+            final int[] imageNbt = nbt.getIntArray(TAG_IMAGE);
+            for (int index = 0; index < Math.min(imageNbt.length, image.length); index++) {
+                image[index] = (byte) (ColorUtils.getIndexByColor(imageNbt[index]) + 1);
+            }
+        }
 
         state = EnumUtils.readFromNBT(State.class, TAG_STATE, nbt);
 
         final byte[] drawCallNbt = nbt.getByteArray(TAG_DRAW_CALL);
         System.arraycopy(drawCallNbt, 0, drawCall, 0, Math.min(drawCallNbt.length, drawCall.length));
+
+        // Module may be reused for client side updates, refresh our texture.
+        if (glTextureId != 0) {
+            uploadRegion(0, 0, RESOLUTION, RESOLUTION);
+        }
     }
 
     @Override
     public void writeToNBT(final NBTTagCompound nbt) {
         super.writeToNBT(nbt);
 
-        nbt.setIntArray(TAG_IMAGE, image);
+        rasterize();
+        if (packedImage == null) {
+            packedImage = packImage();
+        }
+        nbt.setByteArray(TAG_IMAGE_PACKED, packedImage);
         EnumUtils.writeToNBT(state, TAG_STATE, nbt);
         nbt.setByteArray(TAG_DRAW_CALL, drawCall.clone());
     }
@@ -188,12 +291,16 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
         if (state == State.COLOR) {
             // Draw call completed, apply and send to client.
             applyDrawCall(drawCall);
-            sendDrawCall();
         }
     }
 
     /**
-     * Apply a draw call encoded in the specified byte array to our data array.
+     * Apply a draw call encoded in the specified byte array to our image and
+     * send it to our client representation.
+     * <p>
+     * Draw calls are only logged, and applied to the image when it is
+     * needed, see {@link #rasterize()}. Draw calls that are completely
+     * covered by a later one are dropped from the log.
      *
      * @param drawCall the draw call to apply.
      */
@@ -209,11 +316,140 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
         final int y0 = MARGIN + Math.max(0, yin);
         final int y1 = MARGIN + Math.min(RESOLUTION - 2 * MARGIN, yin + h);
 
-        for (int y = y0; y < y1; y++) {
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        packedImage = null;
+
+        final int packed = packDrawCall(x0, y0, x1, y1, Math.max(0, color) % 16 + 1);
+        drawCallLogLength = removeCovered(drawCallLog, drawCallLogLength, packed);
+        if (drawCallLogLength == MAX_LOG_LENGTH) {
+            rasterize();
+        }
+        drawCallLog[drawCallLogLength++] = packed;
+
+        markChanged(packed);
+    }
+
+    /**
+     * Apply all logged draw calls to the image.
+     */
+    private void rasterize() {
+        for (int i = 0; i < drawCallLogLength; i++) {
+            fill(drawCallLog[i]);
+        }
+        drawCallLogLength = 0;
+    }
+
+    /**
+     * Fill the area of the specified packed draw call in the image.
+     *
+     * @param drawCall the draw call to apply.
+     */
+    private void fill(final int drawCall) {
+        final int x0 = getX0(drawCall);
+        final int x1 = getX1(drawCall);
+        final byte value = (byte) getValue(drawCall);
+        for (int y = getY0(drawCall), y1 = getY1(drawCall); y < y1; y++) {
             final int offset = y * RESOLUTION;
-            for (int x = x0; x < x1; x++) {
-                final int index = offset + x;
-                image[index] = ColorUtils.getColorByIndex(Math.max(0, color));
+            Arrays.fill(image, offset + x0, offset + x1, value);
+        }
+    }
+
+    /**
+     * Remove all draw calls from a list that are completely covered by the
+     * specified draw call, keeping the order of the remaining ones.
+     *
+     * @param drawCalls the list of draw calls to remove covered ones from.
+     * @param length    the number of draw calls in the list.
+     * @param drawCall  the draw call covering others.
+     * @return the new number of draw calls in the list.
+     */
+    private static int removeCovered(final int[] drawCalls, final int length, final int drawCall) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            final int other = drawCalls[i];
+            final boolean isCovered = getX0(drawCall) <= getX0(other) && getY0(drawCall) <= getY0(other) &&
+                                      getX1(drawCall) >= getX1(other) && getY1(drawCall) >= getY1(other);
+            if (!isCovered) {
+                drawCalls[count++] = other;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Pack a draw call with its area clamped to the image into an int, for
+     * compact storage in the draw call log.
+     *
+     * @param x0    the minimum x coordinate of the area, inclusive.
+     * @param y0    the minimum y coordinate of the area, inclusive.
+     * @param x1    the maximum x coordinate of the area, exclusive.
+     * @param y1    the maximum y coordinate of the area, exclusive.
+     * @param value the pixel value to fill the area with.
+     * @return the packed draw call.
+     */
+    private static int packDrawCall(final int x0, final int y0, final int x1, final int y1, final int value) {
+        return (x0 & 0x3F) | (y0 & 0x3F) << 6 | (x1 & 0x3F) << 12 | (y1 & 0x3F) << 18 | (value & 0x1F) << 24;
+    }
+
+    private static int getX0(final int drawCall) {
+        return drawCall & 0x3F;
+    }
+
+    private static int getY0(final int drawCall) {
+        return (drawCall >>> 6) & 0x3F;
+    }
+
+    private static int getX1(final int drawCall) {
+        return (drawCall >>> 12) & 0x3F;
+    }
+
+    private static int getY1(final int drawCall) {
+        return (drawCall >>> 18) & 0x3F;
+    }
+
+    private static int getValue(final int drawCall) {
+        return (drawCall >>> 24) & 0x1F;
+    }
+
+    /**
+     * Compress the image for storage. Since there are only sixteen colors
+     * plus the cleared state, we store a bit mask of set pixels followed by
+     * the color index of each pixel, two pixels per byte.
+     *
+     * @return the packed image data.
+     */
+    private byte[] packImage() {
+        final byte[] packed = new byte[PACKED_MASK_SIZE + image.length / 2];
+        for (int index = 0; index < image.length; index++) {
+            final int color = image[index] - 1;
+            if (color < 0) {
+                continue;
+            }
+            packed[index >> 3] |= (byte) (1 << (index & 7));
+            packed[PACKED_MASK_SIZE + (index >> 1)] |= (byte) (color << ((index & 1) * 4));
+        }
+        return packed;
+    }
+
+    /**
+     * Restore the image from data packed using {@link #packImage()}.
+     *
+     * @param packed the packed image data.
+     */
+    private void unpackImage(final byte[] packed) {
+        if (packed.length != PACKED_MASK_SIZE + image.length / 2) {
+            return;
+        }
+
+        for (int index = 0; index < image.length; index++) {
+            if ((packed[index >> 3] & (1 << (index & 7))) == 0) {
+                image[index] = 0;
+            } else {
+                final int color = (packed[PACKED_MASK_SIZE + (index >> 1)] >> ((index & 1) * 4)) & 0x0F;
+                image[index] = (byte) (color + 1);
             }
         }
     }
@@ -227,11 +463,39 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
         if (glTextureId == 0) {
             glTextureId = GlStateManager.generateTexture();
             TextureUtil.allocateTexture(glTextureId, RESOLUTION, RESOLUTION);
-            TextureUtil.uploadTexture(glTextureId, image, RESOLUTION, RESOLUTION);
+            uploadRegion(0, 0, RESOLUTION, RESOLUTION);
         }
         return glTextureId;
     }
 
+    /**
+     * Update the specified region of our texture on the GPU from the image,
+     * if we have a texture. Otherwise it'll be uploaded when it's created.
+     *
+     * @param x0 the minimum x coordinate of the region, inclusive.
+     * @param y0 the minimum y coordinate of the region, inclusive.
+     * @param x1 the maximum x coordinate of the region, exclusive.
+     * @param y1 the maximum y coordinate of the region, exclusive.
+     */
+    private void uploadRegion(final int x0, final int y0, final int x1, final int y1) {
+        if (glTextureId == 0 || x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        final int w = x1 - x0;
+        final int h = y1 - y0;
+        final int[] region = new int[w * h];
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                final int value = image[y * RESOLUTION + x];
+                region[(y - y0) * w + (x - x0)] = value > 0 ? ColorUtils.getColorByIndex(value - 1) : 0;
+            }
+        }
+
+        GlStateManager.bindTexture(glTextureId);
+        TextureUtil.uploadTextureMipmap(new int[][]{region}, w, h, x0, y0, false, false);
+    }
+
     /**
      * Deletes our texture from the GPU, if we have one.
      */
@@ -243,21 +507,101 @@ public final class ModuleDisplay extends AbstractModuleRotatable {
     }
 
     /**
-     * Indicate to our client representation to clear the image data.
+     * Remember a completed draw call for sending it to our client representation,
+     * see {@link #writeChanges(ByteBuf)}.
+     * <p>
+     * Changes are accumulated until they have been sent, so that clients get
+     * at most one update per tick, no matter how many draw calls completed.
+     * As long as there are few of them the draw calls themselves are sent,
+     * otherwise the changed region of the image, see {@link #writeRegion(ByteBuf)}.
+     * The update is only built when it is actually sent, so the image is
+     * rasterized and encoded at most once per update, too.
+     *
+     * @param drawCall the packed draw call to send.
+     */
+    private void markChanged(final int drawCall) {
+        final int flushCount = Network.getFlushCount(getCasing().getCasingWorld());
+        if (flushCount != dirtyFlushCount) {
+            dirtyFlushCount = flushCount;
+            Network.sendModuleData(getCasing(), getFace(), this::writeChanges, DATA_TYPE_UPDATE);
+            drawCallBatchLength = 0;
+            isBatchRasterized = false;
+            dirtyX0 = getX0(drawCall);
+            dirtyY0 = getY0(drawCall);
+            dirtyX1 = getX1(drawCall);
+            dirtyY1 = getY1(drawCall);
+        } else {
+            dirtyX0 = Math.min(dirtyX0, getX0(drawCall));
+            dirtyY0 = Math.min(dirtyY0, getY0(drawCall));
+            dirtyX1 = Math.max(dirtyX1, getX1(drawCall));
+            dirtyY1 = Math.max(dirtyY1, getY1(drawCall));
+        }
+
+        if (!isBatchRasterized) {
+            drawCallBatchLength = removeCovered(drawCallBatch, drawCallBatchLength, drawCall);
+            if (drawCallBatchLength < MAX_BATCH_LENGTH) {
+                drawCallBatch[drawCallBatchLength++] = drawCall;
+            } else {
+                isBatchRasterized = true;
+            }
+        }
+    }
+
+    /**
+     * Write the changes accumulated via {@link #markChanged(int)} for our
+     * client representation, called when the queued update is sent.
+     *
+     * @param data the buffer to write the changes to.
      */
-    private void sendClear() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeBoolean(true);
-        getCasing().sendData(getFace(), data, DATA_TYPE_CLEAR);
+    private void writeChanges(final ByteBuf data) {
+        if (isBatchRasterized) {
+            rasterize();
+            data.writeByte(ENCODING_REGION);
+            writeRegion(data);
+        } else {
+            data.writeByte(ENCODING_DRAW_CALLS);
+            data.writeByte(drawCallBatchLength);
+            for (int i = 0; i < drawCallBatchLength; i++) {
+                final int batchedDrawCall = drawCallBatch[i];
+                data.writeByte(getX0(batchedDrawCall));
+                data.writeByte(getY0(batchedDrawCall));
+                data.writeByte(getX1(batchedDrawCall));
+                data.writeByte(getY1(batchedDrawCall));
+                data.writeByte(getValue(batchedDrawCall));
+            }
+        }
     }
 
     /**
-     * Send a draw call to our client representation.
+     * Write the changed region of the image to the specified buffer. The
+     * pixels in the region are written run-length encoded, as pairs of run
+     * length minus one and pixel value.
+     *
+     * @param data the buffer to write the region to.
      */
-    private void sendDrawCall() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeBoolean(false);
-        data.writeBytes(drawCall);
-        getCasing().sendData(getFace(), data);
+    private void writeRegion(final ByteBuf data) {
+        data.writeByte(dirtyX0);
+        data.writeByte(dirtyY0);
+        data.writeByte(dirtyX1 - dirtyX0);
+        data.writeByte(dirtyY1 - dirtyY0);
+
+        byte runValue = 0;
+        int runLength = 0;
+        for (int y = dirtyY0; y < dirtyY1; y++) {
+            for (int x = dirtyX0; x < dirtyX1; x++) {
+                final byte value = image[y * RESOLUTION + x];
+                if (runLength > 0 && (value != runValue || runLength == MAX_RUN_LENGTH)) {
+                    data.writeByte(runLength - 1);
+                    data.writeByte(runValue);
+                    runLength = 0;
+                }
+                runValue = value;
+                runLength++;
+            }
+        }
+        if (runLength > 0) {
+            data.writeByte(runLength - 1);
+            data.writeByte(runValue);
+        }
     }
 }
@@ -0,0 +1,365 @@
+package li.cil.tis3d.common.module;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.prefab.module.AbstractModuleRotatable;
+import li.cil.tis3d.api.util.RenderUtil;
+import li.cil.tis3d.util.EnumUtils;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+import java.util.Arrays;
+
+/**
+ * The extended memory module can be used to store up to 65536 16-bit values
+ * by address. It uses the same protocol as the {@link ModuleRandomAccessMemory},
+ * but with full 16-bit addresses and values.
+ * <p>
+ * Memory is split into pages which are only allocated when a non-zero value
+ * is first written to them, so mostly empty memory stays cheap to keep and
+ * to save. Clients only get to know which pages are allocated.
+ */
+public final class ModuleExtendedMemory extends AbstractModuleRotatable implements ClientStateAware {
+    // --------------------------------------------------------------------- //
+    // Persisted data
+
+    /**
+     * The allocated pages of memory, <tt>null</tt> for pages never written to.
+     */
+    private final short[][] pages = new short[PAGE_COUNT][];
+    private short address;
+    private State state = State.ADDRESS;
+
+    // --------------------------------------------------------------------- //
+    // Computed data
+
+    /**
+     * Serialized copies of {@link #pages} handed out when saving, shared until
+     * the page is modified again. This way only pages modified since the
+     * last save have to be serialized again.
+     */
+    private final byte[][] pageSnapshots = new byte[PAGE_COUNT][];
+
+    /**
+     * Bit mask of the allocated pages, which is all the client needs to
+     * know for rendering.
+     */
+    private final long[] allocatedPages = new long[PAGE_COUNT / 64];
+
+    /**
+     * The number of values per page.
+     */
+    private static final int PAGE_SIZE = 256;
+
+    /**
+     * The number of pages, enough to cover all 16-bit addresses.
+     */
+    private static final int PAGE_COUNT = 0x10000 / PAGE_SIZE;
+
+    private enum State {
+        ADDRESS,
+        ACCESS
+    }
+
+    // NBT data names.
+    private static final String TAG_PAGES = "pages";
+    private static final String TAG_ALLOCATED_PAGES = "allocatedPages";
+    private static final String TAG_INDEX = "index";
+    private static final String TAG_DATA = "data";
+    private static final String TAG_ADDRESS = "address";
+    private static final String TAG_STATE = "state";
+
+    // Data packet types.
+    private static final byte DATA_TYPE_ALLOCATION = 0;
+
+    // Rendering info.
+    private static final int CELLS = 4;
+    private static final int PAGES_PER_CELL = PAGE_COUNT / (CELLS * CELLS);
+
+    // --------------------------------------------------------------------- //
+
+    public ModuleExtendedMemory(final Casing casing, final Face face) {
+        super(casing, face);
+    }
+
+    // --------------------------------------------------------------------- //
+    // Module
+
+    @Override
+    public void step() {
+        stepInput();
+    }
+
+    @Override
+    public void onDisabled() {
+        // Wipe memory on shutdown.
+        clear();
+        sendAllocation();
+
+        // Reset protocol state.
+        address = 0;
+        state = State.ADDRESS;
+    }
+
+    @Override
+    public void onWriteComplete(final Port port) {
+        // Memory access was completed with a read operation.
+        state = State.ADDRESS;
+
+        // If one completes, cancel all other writes to ensure a value is only
+        // written once.
+        cancelWrite();
+    }
+
+    @Override
+    public void onData(final ByteBuf data) {
+        for (int i = 0; i < allocatedPages.length; i++) {
+            allocatedPages[i] = data.readLong();
+        }
+    }
+
+    @SideOnly(Side.CLIENT)
+    @Override
+    public void render(final boolean enabled, final float partialTicks) {
+        if (!enabled || !isVisible()) {
+            return;
+        }
+
+        rotateForRendering();
+        RenderUtil.ignoreLighting();
+        GlStateManager.enableBlend();
+        GlStateManager.disableTexture2D();
+
+        for (int y = 0; y < CELLS; y++) {
+            for (int x = 0; x < CELLS; x++) {
+                final int offset = (y * CELLS + x) * PAGES_PER_CELL;
+                final float brightness = 0.25f + countAllocated(offset, PAGES_PER_CELL) / (float) PAGES_PER_CELL * 0.75f;
+                GlStateManager.color(1f, 0.7f, 0.4f, brightness);
+
+                final float u0 = ModuleRandomAccessMemory.QUADS_U0 + x * ModuleRandomAccessMemory.QUADS_STEP_U;
+                final float v0 = ModuleRandomAccessMemory.QUADS_V0 + y * ModuleRandomAccessMemory.QUADS_STEP_V;
+                RenderUtil.drawUntexturedQuad(u0, v0, ModuleRandomAccessMemory.QUADS_SIZE_U, ModuleRandomAccessMemory.QUADS_SIZE_V);
+            }
+        }
+
+        GlStateManager.enableTexture2D();
+        GlStateManager.disableBlend();
+    }
+
+    @Override
+    public void readFromNBT(final NBTTagCompound nbt) {
+        super.readFromNBT(nbt);
+
+        clear();
+        if (nbt.hasKey(TAG_ALLOCATED_PAGES, Constants.NBT.TAG_INT_ARRAY)) {
+            // Client state, see writeClientStateToNBT.
+            final int[] allocatedNbt = nbt.getIntArray(TAG_ALLOCATED_PAGES);
+            for (int i = 0; i < Math.min(allocatedNbt.length / 2, allocatedPages.length); i++) {
+                allocatedPages[i] = (long) allocatedNbt[i * 2] << 32 | (allocatedNbt[i * 2 + 1] & 0xFFFFFFFFL);
+            }
+            return;
+        }
+
+        final NBTTagList pagesNbt = nbt.getTagList(TAG_PAGES, Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < pagesNbt.tagCount(); i++) {
+            final NBTTagCompound pageNbt = pagesNbt.getCompoundTagAt(i);
+            final int index = pageNbt.getInteger(TAG_INDEX);
+            final byte[] data = pageNbt.getByteArray(TAG_DATA);
+            if (index < 0 || index >= PAGE_COUNT || data.length != PAGE_SIZE * 2) {
+                continue;
+            }
+
+            final short[] page = allocate(index);
+            for (int offset = 0; offset < PAGE_SIZE; offset++) {
+                page[offset] = (short) ((data[offset * 2] & 0xFF) << 8 | (data[offset * 2 + 1] & 0xFF));
+            }
+        }
+
+        address = nbt.getShort(TAG_ADDRESS);
+        state = EnumUtils.readFromNBT(State.class, TAG_STATE, nbt);
+    }
+
+    @Override
+    public void writeToNBT(final NBTTagCompound nbt) {
+        super.writeToNBT(nbt);
+
+        final NBTTagList pagesNbt = new NBTTagList();
+        for (int index = 0; index < PAGE_COUNT; index++) {
+            if (pages[index] == null) {
+                continue;
+            }
+
+            final NBTTagCompound pageNbt = new NBTTagCompound();
+            pageNbt.setInteger(TAG_INDEX, index);
+            pageNbt.setByteArray(TAG_DATA, getPageSnapshot(index));
+            pagesNbt.appendTag(pageNbt);
+        }
+        nbt.setTag(TAG_PAGES, pagesNbt);
+        nbt.setShort(TAG_ADDRESS, address);
+        EnumUtils.writeToNBT(state, TAG_STATE, nbt);
+    }
+
+    // --------------------------------------------------------------------- //
+    // ClientStateAware
+
+    @Override
+    public void writeClientStateToNBT(final NBTTagCompound nbt) {
+        final int[] allocatedNbt = new int[allocatedPages.length * 2];
+        for (int i = 0; i < allocatedPages.length; i++) {
+            allocatedNbt[i * 2] = (int) (allocatedPages[i] >>> 32);
+            allocatedNbt[i * 2 + 1] = (int) allocatedPages[i];
+        }
+        nbt.setIntArray(TAG_ALLOCATED_PAGES, allocatedNbt);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get a serialized copy of the page with the specified index that may be
+     * stored by reference, e.g. in an NBT tag. The returned array must not be
+     * modified.
+     *
+     * @param index the index of the page to get the snapshot for.
+     * @return a snapshot of the current page contents.
+     */
+    private byte[] getPageSnapshot(final int index) {
+        if (pageSnapshots[index] == null) {
+            final short[] page = pages[index];
+            final byte[] data = new byte[PAGE_SIZE * 2];
+            for (int offset = 0; offset < PAGE_SIZE; offset++) {
+                data[offset * 2] = (byte) (page[offset] >> 8);
+                data[offset * 2 + 1] = (byte) page[offset];
+            }
+            pageSnapshots[index] = data;
+        }
+        return pageSnapshots[index];
+    }
+
+    private short[] allocate(final int index) {
+        pages[index] = new short[PAGE_SIZE];
+        pageSnapshots[index] = null;
+        allocatedPages[index >> 6] |= 1L << (index & 63);
+        return pages[index];
+    }
+
+    private short get() {
+        final short[] page = pages[(address & 0xFFFF) / PAGE_SIZE];
+        return page != null ? page[address & (PAGE_SIZE - 1)] : 0;
+    }
+
+    private void set(final short value) {
+        final int index = (address & 0xFFFF) / PAGE_SIZE;
+        short[] page = pages[index];
+        if (page == null) {
+            if (value == 0) {
+                return;
+            }
+            page = allocate(index);
+            sendAllocation();
+        }
+        page[address & (PAGE_SIZE - 1)] = value;
+        pageSnapshots[index] = null;
+    }
+
+    private void clear() {
+        Arrays.fill(pages, null);
+        Arrays.fill(pageSnapshots, null);
+        Arrays.fill(allocatedPages, 0);
+    }
+
+    private int countAllocated(final int offset, final int count) {
+        int allocated = 0;
+        for (int index = offset, end = offset + count; index < end; index++) {
+            if ((allocatedPages[index >> 6] & (1L << (index & 63))) != 0) {
+                allocated++;
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Update the inputs of the memory, start reading if we're not already.
+     */
+    private void stepInput() {
+        for (final Port port : Port.VALUES) {
+            // Continuously read from all ports.
+            final Pipe receivingPipe = getCasing().getReceivingPipe(getFace(), port);
+            if (!receivingPipe.isReading()) {
+                receivingPipe.beginRead();
+            }
+            if (receivingPipe.canTransfer()) {
+                // Handle the input.
+                process(receivingPipe.read());
+
+                // Start reading again right away to read as fast as possible.
+                receivingPipe.beginRead();
+            }
+        }
+    }
+
+    private void process(final short value) {
+        switch (state) {
+            case ADDRESS:
+                beginReadWrite(value);
+                break;
+            case ACCESS:
+                finishReading(value);
+                break;
+        }
+    }
+
+    /**
+     * Setting address for next read or write operation.
+     *
+     * @param address the address to operate on.
+     */
+    private void beginReadWrite(final short address) {
+        // Set the address the next operation will operate on.
+        this.address = address;
+
+        // Change to the read/write state.
+        state = State.ACCESS;
+
+        // Begin writing the value at that address to all ports.
+        final short value = get();
+        for (final Port port : Port.VALUES) {
+            getCasing().getSendingPipe(getFace(), port).beginWrite(value);
+        }
+    }
+
+    /**
+     * Memory access was completed with a write operation.
+     *
+     * @param value the value that is to be written to memory.
+     */
+    private void finishReading(final short value) {
+        // Store the value written to the memory.
+        set(value);
+
+        // Restart the cycle waiting for the next address to operate on.
+        state = State.ADDRESS;
+
+        // If reading completes, cancel all writes to avoid read/write in one.
+        cancelWrite();
+    }
+
+    /**
+     * Send the bit mask of allocated pages to our client representation.
+     * Only the latest mask queued before data is sent is transferred.
+     */
+    private void sendAllocation() {
+        final ByteBuf data = Unpooled.buffer();
+        for (final long allocated : allocatedPages) {
+            data.writeLong(allocated);
+        }
+        getCasing().sendData(getFace(), data, DATA_TYPE_ALLOCATION);
+    }
+}
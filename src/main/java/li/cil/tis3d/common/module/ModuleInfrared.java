@@ -11,8 +11,8 @@ import li.cil.tis3d.api.prefab.module.AbstractModule;
 import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.renderer.TextureLoader;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.util.ShortRingBuffer;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.nbt.NBTTagIntArray;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.RayTraceResult;
@@ -21,14 +21,12 @@ import net.minecraft.world.World;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
-import java.util.Deque;
-import java.util.LinkedList;
-
 public final class ModuleInfrared extends AbstractModule implements InfraredReceiver {
     // --------------------------------------------------------------------- //
     // Persisted data
 
-    private final Deque<Short> receiveQueue = new LinkedList<>();
+    // Never sent to clients, so no need to record operations on it.
+    private final ShortRingBuffer receiveQueue = new ShortRingBuffer(Settings.maxInfraredQueueLength, false);
 
     // --------------------------------------------------------------------- //
     // Computed data
@@ -70,7 +68,7 @@ public final class ModuleInfrared extends AbstractModule implements InfraredRece
     @Override
     public void onWriteComplete(final Port port) {
         // Pop the top value (the one that was being written).
-        receiveQueue.removeFirst();
+        receiveQueue.popFirst();
 
         // If one completes, cancel all other writes to ensure a value is only
         // written once.
@@ -96,24 +94,14 @@ public final class ModuleInfrared extends AbstractModule implements InfraredRece
     public void readFromNBT(final NBTTagCompound nbt) {
         super.readFromNBT(nbt);
 
-        receiveQueue.clear();
-        final int[] receiveQueueNbt = nbt.getIntArray(TAG_RECEIVE_QUEUE);
-        for (final int value : receiveQueueNbt) {
-            receiveQueue.addLast((short) value);
-        }
+        receiveQueue.readFromNBT(nbt, TAG_RECEIVE_QUEUE, true);
     }
 
     @Override
     public void writeToNBT(final NBTTagCompound nbt) {
         super.writeToNBT(nbt);
 
-        final int[] receiveQueueArray = new int[receiveQueue.size()];
-        int i = 0;
-        for (final int value : receiveQueue) {
-            receiveQueueArray[i++] = value;
-        }
-        final NBTTagIntArray receiveQueueNbt = new NBTTagIntArray(receiveQueueArray);
-        nbt.setTag(TAG_RECEIVE_QUEUE, receiveQueueNbt);
+        receiveQueue.writeToNBT(nbt, TAG_RECEIVE_QUEUE);
     }
 
     // --------------------------------------------------------------------- //
@@ -127,8 +115,8 @@ public final class ModuleInfrared extends AbstractModule implements InfraredRece
         }
 
         final short value = packet.getPacketValue();
-        if (receiveQueue.size() < Settings.maxInfraredQueueLength) {
-            receiveQueue.addLast(value);
+        if (!receiveQueue.isFull()) {
+            receiveQueue.pushLast(value);
         }
     }
 
@@ -186,6 +186,8 @@ public final class ModuleKeypad extends AbstractModuleRotatable {
 
         if (nbt.hasKey(TAG_VALUE)) {
             value = Optional.of(nbt.getShort(TAG_VALUE));
+        } else {
+            value = Optional.empty();
         }
     }
 
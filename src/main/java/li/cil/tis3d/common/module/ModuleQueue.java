@@ -10,6 +10,10 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleRotatable;
 import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.renderer.TextureLoader;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.util.NBTUtils;
+import li.cil.tis3d.util.ShortRingBuffer;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.nbt.NBTTagCompound;
@@ -28,26 +32,40 @@ public final class ModuleQueue extends AbstractModuleRotatable {
     // --------------------------------------------------------------------- //
     // Persisted data
 
-    private final short[] queue = new short[QUEUE_SIZE];
-    private int head = 0; // Highest element index, exclusive.
-    private int tail = 0; // Lowest element index, inclusive.
+    /**
+     * The stored values, the bottom of the queue being the first value.
+     */
+    private final ShortRingBuffer queue = new ShortRingBuffer(Settings.queueCapacity);
 
     // --------------------------------------------------------------------- //
     // Computed data
 
     // NBT data names.
     private static final String TAG_QUEUE = "queue";
-    private static final String TAG_HEAD = "head";
-    private static final String TAG_TAIL = "tail";
+    private static final String TAG_HEAD = "head"; // Legacy, queue used to be a fixed size array.
+    private static final String TAG_TAIL = "tail"; // Legacy, queue used to be a fixed size array.
 
     // Data packet types.
     private static final byte DATA_TYPE_UPDATE = 0;
 
     /**
-     * The number of elements the queue may store, plus one never used slot
-     * to allow easily differentiating empty and full queue states.
+     * The size of the array stored in legacy data, i.e. the number of
+     * elements the queue could store, plus one never used slot to allow
+     * easily differentiating empty and full queue states.
+     */
+    private static final int LEGACY_QUEUE_SIZE = 17;
+
+    /**
+     * The maximum number of elements rendered.
+     */
+    private static final int RENDERED_ELEMENTS = 16;
+
+    /**
+     * The Network flush count when we last sent changes to clients. If it is
+     * still the same the sent changes have not been transferred yet, so they
+     * get replaced with the new changes.
      */
-    private static final int QUEUE_SIZE = 17;
+    private int sentFlushCount = -1;
 
     // --------------------------------------------------------------------- //
 
@@ -62,12 +80,14 @@ public final class ModuleQueue extends AbstractModuleRotatable {
     public void step() {
         stepOutput();
         stepInput();
+
+        sendData();
     }
 
     @Override
     public void onDisabled() {
         // Clear queue on shutdown.
-        head = tail = 0;
+        queue.clear();
 
         sendData();
     }
@@ -75,7 +95,8 @@ public final class ModuleQueue extends AbstractModuleRotatable {
     @Override
     public void onWriteComplete(final Port port) {
         // Pop the bottom value (the one that was being written).
-        pop();
+        queue.popFirst();
+        sendData();
 
         // If one completes, cancel all other writes to ensure a value is only
         // written once.
@@ -87,11 +108,7 @@ public final class ModuleQueue extends AbstractModuleRotatable {
 
     @Override
     public void onData(final ByteBuf data) {
-        head = data.readByte();
-        tail = data.readByte();
-        for (int i = 0; i < queue.length; i++) {
-            queue[i] = data.readShort();
-        }
+        queue.applyChanges(data);
     }
 
     @SideOnly(Side.CLIENT)
@@ -107,7 +124,7 @@ public final class ModuleQueue extends AbstractModuleRotatable {
         RenderUtil.drawQuad(RenderUtil.getSprite(TextureLoader.LOCATION_MODULE_QUEUE_OVERLAY));
 
         // Render detailed state when player is close.
-        if (!isEmpty() && Minecraft.getMinecraft().player.getDistanceSqToCenter(getCasing().getPosition()) < 64) {
+        if (!queue.isEmpty() && Minecraft.getMinecraft().player.getDistanceSqToCenter(getCasing().getPosition()) < 64) {
             drawState();
         }
     }
@@ -116,96 +133,46 @@ public final class ModuleQueue extends AbstractModuleRotatable {
     public void readFromNBT(final NBTTagCompound nbt) {
         super.readFromNBT(nbt);
 
-        final int[] queueNbt = nbt.getIntArray(TAG_QUEUE);
-        final int count = Math.min(queueNbt.length, queue.length);
-        for (int i = 0; i < count; i++) {
-            queue[i] = (short) queueNbt[i];
+        if (nbt.hasKey(TAG_HEAD)) {
+            final short[] values = new short[LEGACY_QUEUE_SIZE];
+            NBTUtils.getShortArray(nbt, TAG_QUEUE, values);
+            final int head = MathHelper.clamp(nbt.getInteger(TAG_HEAD), 0, LEGACY_QUEUE_SIZE - 1);
+            final int tail = MathHelper.clamp(nbt.getInteger(TAG_TAIL), 0, LEGACY_QUEUE_SIZE - 1);
+
+            // Unwrap the values, so they're in order starting at the tail.
+            final short[] ordered = new short[LEGACY_QUEUE_SIZE];
+            int count = 0;
+            for (int i = tail; i != head; i = (i + 1) % LEGACY_QUEUE_SIZE) {
+                ordered[count++] = values[i];
+            }
+            queue.set(ordered, 0, count);
+        } else {
+            queue.readFromNBT(nbt, TAG_QUEUE, !getCasing().getCasingWorld().isRemote);
         }
-
-        head = MathHelper.clamp(nbt.getInteger(TAG_HEAD), 0, QUEUE_SIZE - 1);
-        tail = MathHelper.clamp(nbt.getInteger(TAG_TAIL), 0, QUEUE_SIZE - 1);
     }
 
     @Override
     public void writeToNBT(final NBTTagCompound nbt) {
         super.writeToNBT(nbt);
 
-        final int[] queueNbt = new int[queue.length];
-        for (int i = 0; i < queue.length; i++) {
-            queueNbt[i] = queue[i];
-        }
-        nbt.setIntArray(TAG_QUEUE, queueNbt);
-
-        nbt.setInteger(TAG_HEAD, head);
-        nbt.setInteger(TAG_TAIL, tail);
+        queue.writeToNBT(nbt, TAG_QUEUE);
     }
 
     // --------------------------------------------------------------------- //
 
-    /**
-     * Check whether the queue is currently empty, i.e. no more items can be retrieved.
-     *
-     * @return <tt>true</tt> if the queue is empty, <tt>false</tt> otherwise.
-     */
-    private boolean isEmpty() {
-        return head == tail;
-    }
-
-    /**
-     * Check whether the queue is currently full, i.e. no more items can be stored.
-     *
-     * @return <tt>true</tt> if the queue is full, <tt>false</tt> otherwise.
-     */
-    private boolean isFull() {
-        return (head + 1) % QUEUE_SIZE == tail;
-    }
-
-    /**
-     * Store the specified item on the queue.
-     *
-     * @param value the value to store on the queue.
-     * @throws ArrayIndexOutOfBoundsException if the queue is full.
-     */
-    private void push(final short value) {
-        queue[head] = value;
-        head = (head + 1) % QUEUE_SIZE;
-
-        sendData();
-    }
-
-    /**
-     * Retrieve the value that's currently on top of the queue, i.e. the value
-     * that was last pushed to the queue.
-     *
-     * @return the value on top of the queue.
-     * @throws ArrayIndexOutOfBoundsException if the queue is empty.
-     */
-    private short peek() {
-        return queue[tail];
-    }
-
-    /**
-     * Reduces the queue size by one.
-     */
-    private void pop() {
-        tail = (tail + 1) % QUEUE_SIZE;
-
-        sendData();
-    }
-
     /**
      * Update the outputs of the queue, pushing the top value.
      */
     private void stepOutput() {
         // Don't try to write if the queue is empty.
-        if (isEmpty()) {
+        if (queue.isEmpty()) {
             return;
         }
 
         for (final Port port : Port.VALUES) {
             final Pipe sendingPipe = getCasing().getSendingPipe(getFace(), port);
             if (!sendingPipe.isWriting()) {
-                sendingPipe.beginWrite(peek());
+                sendingPipe.beginWrite(queue.peekFirst());
             }
         }
     }
@@ -216,7 +183,7 @@ public final class ModuleQueue extends AbstractModuleRotatable {
     private void stepInput() {
         for (final Port port : Port.VALUES) {
             // Stop reading if the queue is full.
-            if (isFull()) {
+            if (queue.isFull()) {
                 return;
             }
 
@@ -227,23 +194,32 @@ public final class ModuleQueue extends AbstractModuleRotatable {
             }
             if (receivingPipe.canTransfer()) {
                 // Store the value.
-                push(receivingPipe.read());
+                queue.pushLast(receivingPipe.read());
 
                 // Start reading again right away to read as fast as possible.
-                if (!isFull()) {
+                if (!queue.isFull()) {
                     receivingPipe.beginRead();
                 }
             }
         }
     }
 
+    /**
+     * Send the changes to the queue since we last sent it to clients, if
+     * there are any. Replaces changes queued before that were not sent yet.
+     */
     private void sendData() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeByte(head);
-        data.writeByte(tail);
-        for (final short value : queue) {
-            data.writeShort(value);
+        final int flushCount = Network.getFlushCount(getCasing().getCasingWorld());
+        if (flushCount != sentFlushCount) {
+            queue.confirmChanges();
+        }
+        if (!queue.hasNewChanges()) {
+            return;
         }
+        sentFlushCount = flushCount;
+
+        final ByteBuf data = Unpooled.buffer();
+        queue.writeChanges(data);
         getCasing().sendData(getFace(), data, DATA_TYPE_UPDATE);
     }
 
@@ -255,8 +231,9 @@ public final class ModuleQueue extends AbstractModuleRotatable {
         GlStateManager.translate(4.5f, 14.5f, 0);
         GlStateManager.color(1f, 1f, 1f, 1f);
 
-        for (int i = tail, j = 0; i != head; i = (i + 1) % QUEUE_SIZE, j++) {
-            FontRendererAPI.drawString(String.format("%4X", queue[i]));
+        // Show the bottom-most values if there are more than fit.
+        for (int j = 0; j < Math.min(queue.size(), RENDERED_ELEMENTS); j++) {
+            FontRendererAPI.drawString(String.format("%4X", queue.get(j)));
             GlStateManager.translate(0, FontRendererAPI.getCharHeight() + 1, 0);
             if ((j + 1) % 4 == 0) {
                 GlStateManager.translate((FontRendererAPI.getCharWidth() + 1) * 5, (FontRendererAPI.getCharHeight() + 1) * -4, 0);
@@ -1,7 +1,6 @@
 package li.cil.tis3d.common.module;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
@@ -10,7 +9,9 @@ import li.cil.tis3d.api.prefab.module.AbstractModuleRotatable;
 import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.init.Items;
+import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.util.EnumUtils;
+import li.cil.tis3d.util.InternUtils;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
@@ -33,18 +34,69 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
     // --------------------------------------------------------------------- //
     // Persisted data
 
-    protected final byte[] memory = new byte[MEMORY_SIZE];
+    /**
+     * The contents of the memory. May be the same array as {@link #memorySnapshot},
+     * in which case it is shared and must be copied before modifying it.
+     */
+    protected byte[] memory = new byte[MEMORY_SIZE];
     protected byte address;
     protected State state = State.ADDRESS;
 
     // --------------------------------------------------------------------- //
     // Computed data
 
+    /**
+     * Interned copy of {@link #memory}, kept until the memory is modified again.
+     * All modules with the same contents, such as many ROMs programmed with the
+     * same lookup table, share a single array. Until the memory is modified the
+     * module uses that array directly.
+     * <p>
+     * Interned arrays are private to the modules sharing them. NBT tags hand
+     * out their backing array, so interned arrays are never stored in a tag,
+     * see {@link #savedMemory}, and data read from a tag is only interned as
+     * a copy, if its contents are not already known.
+     */
+    private byte[] memorySnapshot;
+
+    /**
+     * Copy of {@link #memory} handed out when saving, to the module's NBT or
+     * to item stacks, reused until the memory is modified again. Avoids
+     * copying the whole memory each time the module is saved while it's not
+     * being changed, which is the common case (and always the case for ROMs).
+     * <p>
+     * Owned by the tags it was written to, the module never reads it back.
+     */
+    private byte[] savedMemory;
+
+    /**
+     * Bit mask of the pages of memory changed since data was last sent to
+     * clients, see {@link #PAGE_SIZE}.
+     */
+    private int dirtyPages;
+
+    /**
+     * The {@link Network#getFlushCount(net.minecraft.world.World)} when we
+     * last queued changed pages for sending. If it is still the same the
+     * queued data has not been sent yet, so further changes get merged into it.
+     */
+    private int dirtyFlushCount = -1;
+
     /**
      * The size of the memory, in bytes.
      */
     protected static final int MEMORY_SIZE = 256;
 
+    /**
+     * The size of the pages changes are tracked in, in bytes. One page per
+     * cell of the memory rendered on the module.
+     */
+    protected static final int PAGE_SIZE = 16;
+
+    /**
+     * Bit mask with the bits of all pages set.
+     */
+    private static final int ALL_PAGES = (1 << (MEMORY_SIZE / PAGE_SIZE)) - 1;
+
     protected enum State {
         ADDRESS,
         ACCESS
@@ -56,12 +108,7 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
     protected static final String TAG_STATE = "state";
 
     // Data packet types.
-    protected static final byte DATA_TYPE_CLEAR = 0;
-
-    // Message types.
-    protected static final byte PACKET_CLEAR = 0;
-    protected static final byte PACKET_SINGLE = 1;
-    protected static final byte PACKET_FULL = 2;
+    protected static final byte DATA_TYPE_PAGES = 0;
 
     // Rendering info.
     public static final float QUADS_U0 = 5 / 32f;
@@ -122,7 +169,7 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
                 ModuleRandomAccessMemory.writeDataToStack(this, heldItem);
             } else {
                 ModuleRandomAccessMemory.readDataFromStack(this, heldItem);
-                sendFull();
+                sendPages(ALL_PAGES);
             }
         }
 
@@ -131,17 +178,16 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
 
     @Override
     public void onData(final ByteBuf data) {
-        switch (data.readByte()) {
-            case PACKET_CLEAR:
-                clear();
-                break;
-            case PACKET_SINGLE:
-                address = data.readByte();
-                set(data.readByte());
-                break;
-            case PACKET_FULL:
-                data.readBytes(memory);
-                break;
+        final int pages = data.readUnsignedShort();
+        final int zeroPages = data.readUnsignedShort();
+        beginModify();
+        for (int page = 0; page < MEMORY_SIZE / PAGE_SIZE; page++) {
+            final int mask = 1 << page;
+            if ((zeroPages & mask) != 0) {
+                Arrays.fill(memory, page * PAGE_SIZE, (page + 1) * PAGE_SIZE, (byte) 0);
+            } else if ((pages & mask) != 0) {
+                data.readBytes(memory, page * PAGE_SIZE, PAGE_SIZE);
+            }
         }
     }
 
@@ -188,7 +234,7 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
     public void writeToNBT(final NBTTagCompound nbt) {
         super.writeToNBT(nbt);
 
-        nbt.setByteArray(TAG_MEMORY, memory.clone());
+        nbt.setByteArray(TAG_MEMORY, getSavedMemory());
         nbt.setByte(TAG_ADDRESS, address);
         EnumUtils.writeToNBT(state, TAG_STATE, nbt);
     }
@@ -197,7 +243,7 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
 
     protected void clearOnDisabled() {
         clear();
-        sendClear();
+        sendPages(ALL_PAGES);
     }
 
     /**
@@ -249,21 +295,69 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
         if (nbt == null) {
             stack.setTagCompound(nbt = new NBTTagCompound());
         }
-        nbt.setByteArray(TAG_MEMORY, memory.memory.clone());
+        nbt.setByteArray(TAG_MEMORY, memory.getSavedMemory());
     }
 
     // --------------------------------------------------------------------- //
 
+    /**
+     * Get the interned copy of the current memory contents. The returned array
+     * is shared and must not be modified, or stored anywhere it may be, such as
+     * an NBT tag.
+     *
+     * @return a snapshot of the current memory contents.
+     */
+    private byte[] getMemorySnapshot() {
+        if (memorySnapshot == null) {
+            // Memory is private to us whenever there is no snapshot, so it
+            // can be interned as is.
+            memorySnapshot = InternUtils.intern(memory);
+            memory = memorySnapshot;
+        }
+        return memorySnapshot;
+    }
+
+    /**
+     * Get a copy of the current memory contents that may be stored in an NBT
+     * tag, created once per modification of the memory.
+     *
+     * @return a copy of the current memory contents, owned by NBT.
+     */
+    private byte[] getSavedMemory() {
+        if (savedMemory == null) {
+            savedMemory = getMemorySnapshot().clone();
+        }
+        return savedMemory;
+    }
+
+    /**
+     * Prepare the memory for modification, copying it if it is shared.
+     */
+    private void beginModify() {
+        if (memory == memorySnapshot) {
+            memory = memory.clone();
+        }
+        memorySnapshot = null;
+        savedMemory = null;
+    }
+
     private int get() {
         return memory[address & 0xFF] & 0xFF;
     }
 
     private void set(final int value) {
+        beginModify();
         memory[address & 0xFF] = (byte) value;
     }
 
     private void clear() {
-        Arrays.fill(memory, (byte) 0);
+        if (memory == memorySnapshot) {
+            memory = new byte[MEMORY_SIZE];
+        } else {
+            Arrays.fill(memory, (byte) 0);
+        }
+        memorySnapshot = null;
+        savedMemory = null;
     }
 
     /**
@@ -332,28 +426,61 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
         cancelWrite();
 
         // Update client representation.
-        sendSingle();
+        sendPages(1 << ((address & 0xFF) / PAGE_SIZE));
     }
 
-    private void sendClear() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeByte(PACKET_CLEAR);
-        getCasing().sendData(getFace(), data, DATA_TYPE_CLEAR);
+    /**
+     * Send the specified pages to our client representation.
+     * <p>
+     * Changed pages are accumulated until they have been sent, so that
+     * clients get at most one update per tick, no matter how many values
+     * were written. The update is only built when it is actually sent, see
+     * {@link #writePages(ByteBuf)}.
+     *
+     * @param pages bit mask of the pages that changed.
+     */
+    private void sendPages(final int pages) {
+        final int flushCount = Network.getFlushCount(getCasing().getCasingWorld());
+        if (flushCount != dirtyFlushCount) {
+            dirtyFlushCount = flushCount;
+            dirtyPages = 0;
+            Network.sendModuleData(getCasing(), getFace(), this::writePages, DATA_TYPE_PAGES);
+        }
+        dirtyPages |= pages;
     }
 
-    private void sendSingle() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeByte(PACKET_SINGLE);
-        data.writeByte(address);
-        data.writeByte(memory[address & 0xFF]);
-        getCasing().sendData(getFace(), data);
+    /**
+     * Write the pages changed since data was last sent to clients. The data
+     * starts with the bit mask of sent pages, followed by the bit mask of
+     * sent pages that are all zero, followed by the contents of the
+     * remaining sent pages.
+     *
+     * @param data the buffer to write the pages to.
+     */
+    private void writePages(final ByteBuf data) {
+        int zeroPages = 0;
+        for (int page = 0; page < MEMORY_SIZE / PAGE_SIZE; page++) {
+            if ((dirtyPages & (1 << page)) != 0 && isZero(page)) {
+                zeroPages |= 1 << page;
+            }
+        }
+
+        data.writeShort(dirtyPages);
+        data.writeShort(zeroPages);
+        for (int page = 0; page < MEMORY_SIZE / PAGE_SIZE; page++) {
+            if (((dirtyPages & ~zeroPages) & (1 << page)) != 0) {
+                data.writeBytes(memory, page * PAGE_SIZE, PAGE_SIZE);
+            }
+        }
     }
 
-    private void sendFull() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeByte(PACKET_FULL);
-        data.writeBytes(memory);
-        getCasing().sendData(getFace(), data);
+    private boolean isZero(final int page) {
+        for (int i = page * PAGE_SIZE, end = (page + 1) * PAGE_SIZE; i < end; i++) {
+            if (memory[i] != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private float sectorSum(final int offset, final int count) {
@@ -365,8 +492,16 @@ public class ModuleRandomAccessMemory extends AbstractModuleRotatable {
     }
 
     private void loadMemoryFromNBT(final NBTTagCompound nbt) {
-        clear();
         final byte[] data = nbt.getByteArray(TAG_MEMORY);
-        System.arraycopy(data, 0, memory, 0, Math.min(data.length, memory.length));
+        if (data.length == MEMORY_SIZE) {
+            // Share the data, until we modify it. The array is owned by the
+            // tag, so it only gets copied if its contents are not known yet.
+            memorySnapshot = InternUtils.internCopy(data);
+            memory = memorySnapshot;
+            savedMemory = null;
+        } else {
+            clear();
+            System.arraycopy(data, 0, memory, 0, Math.min(data.length, memory.length));
+        }
     }
 }
@@ -10,6 +10,10 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleRotatable;
 import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.renderer.TextureLoader;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.util.NBTUtils;
+import li.cil.tis3d.util.ShortRingBuffer;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.nbt.NBTTagCompound;
@@ -28,23 +32,37 @@ public final class ModuleStack extends AbstractModuleRotatable {
     // --------------------------------------------------------------------- //
     // Persisted data
 
-    private final short[] stack = new short[STACK_SIZE];
-    private int top = -1;
+    /**
+     * The stored values, the top of the stack being the last value.
+     */
+    private final ShortRingBuffer stack = new ShortRingBuffer(Settings.stackCapacity);
 
     // --------------------------------------------------------------------- //
     // Computed data
 
     // NBT data names.
     private static final String TAG_STACK = "stack";
-    private static final String TAG_TOP = "top";
+    private static final String TAG_TOP = "top"; // Legacy, stack used to be a fixed size array.
 
     // Data packet types.
     private static final byte DATA_TYPE_UPDATE = 0;
 
     /**
-     * The number of elements the stack may store.
+     * The number of elements stored in legacy data.
+     */
+    private static final int LEGACY_STACK_SIZE = 16;
+
+    /**
+     * The maximum number of elements rendered.
+     */
+    private static final int RENDERED_ELEMENTS = 16;
+
+    /**
+     * The Network flush count when we last sent changes to clients. If it is
+     * still the same the sent changes have not been transferred yet, so they
+     * get replaced with the new changes.
      */
-    private static final int STACK_SIZE = 16;
+    private int sentFlushCount = -1;
 
     // --------------------------------------------------------------------- //
 
@@ -59,12 +77,14 @@ public final class ModuleStack extends AbstractModuleRotatable {
     public void step() {
         stepOutput();
         stepInput();
+
+        sendData();
     }
 
     @Override
     public void onDisabled() {
         // Clear stack on shutdown.
-        top = -1;
+        stack.clear();
 
         sendData();
     }
@@ -72,7 +92,8 @@ public final class ModuleStack extends AbstractModuleRotatable {
     @Override
     public void onWriteComplete(final Port port) {
         // Pop the top value (the one that was being written).
-        pop();
+        stack.popLast();
+        sendData();
 
         // If one completes, cancel all other writes to ensure a value is only
         // written once.
@@ -84,10 +105,7 @@ public final class ModuleStack extends AbstractModuleRotatable {
 
     @Override
     public void onData(final ByteBuf data) {
-        top = data.readByte();
-        for (int i = 0; i < stack.length; i++) {
-            stack[i] = data.readShort();
-        }
+        stack.applyChanges(data);
     }
 
     @SideOnly(Side.CLIENT)
@@ -103,7 +121,7 @@ public final class ModuleStack extends AbstractModuleRotatable {
         RenderUtil.drawQuad(RenderUtil.getSprite(TextureLoader.LOCATION_MODULE_STACK_OVERLAY));
 
         // Render detailed state when player is close.
-        if (!isEmpty() && Minecraft.getMinecraft().player.getDistanceSqToCenter(getCasing().getPosition()) < 64) {
+        if (!stack.isEmpty() && Minecraft.getMinecraft().player.getDistanceSqToCenter(getCasing().getPosition()) < 64) {
             drawState();
         }
     }
@@ -112,93 +130,38 @@ public final class ModuleStack extends AbstractModuleRotatable {
     public void readFromNBT(final NBTTagCompound nbt) {
         super.readFromNBT(nbt);
 
-        final int[] stackNbt = nbt.getIntArray(TAG_STACK);
-        final int count = Math.min(stackNbt.length, stack.length);
-        for (int i = 0; i < count; i++) {
-            stack[i] = (short) stackNbt[i];
+        if (nbt.hasKey(TAG_TOP)) {
+            final short[] values = new short[LEGACY_STACK_SIZE];
+            NBTUtils.getShortArray(nbt, TAG_STACK, values);
+            final int top = MathHelper.clamp(nbt.getInteger(TAG_TOP), -1, LEGACY_STACK_SIZE - 1);
+            stack.set(values, 0, top + 1);
+        } else {
+            stack.readFromNBT(nbt, TAG_STACK, !getCasing().getCasingWorld().isRemote);
         }
-
-        top = MathHelper.clamp(nbt.getInteger(TAG_TOP), -1, STACK_SIZE - 1);
     }
 
     @Override
     public void writeToNBT(final NBTTagCompound nbt) {
         super.writeToNBT(nbt);
 
-        final int[] stackNbt = new int[stack.length];
-        for (int i = 0; i < stack.length; i++) {
-            stackNbt[i] = stack[i];
-        }
-        nbt.setIntArray(TAG_STACK, stackNbt);
-
-        nbt.setInteger(TAG_TOP, top);
+        stack.writeToNBT(nbt, TAG_STACK);
     }
 
     // --------------------------------------------------------------------- //
 
-    /**
-     * Check whether the stack is currently empty, i.e. no more items can be retrieved.
-     *
-     * @return <tt>true</tt> if the stack is empty, <tt>false</tt> otherwise.
-     */
-    private boolean isEmpty() {
-        return top < 0;
-    }
-
-    /**
-     * Check whether the stack is currently full, i.e. no more items can be stored.
-     *
-     * @return <tt>true</tt> if the stack is full, <tt>false</tt> otherwise.
-     */
-    private boolean isFull() {
-        return top >= STACK_SIZE - 1;
-    }
-
-    /**
-     * Store the specified item on the stack.
-     *
-     * @param value the value to store on the stack.
-     * @throws ArrayIndexOutOfBoundsException if the stack is full.
-     */
-    private void push(final short value) {
-        stack[++top] = value;
-
-        sendData();
-    }
-
-    /**
-     * Retrieve the value that's currently on top of the stack, i.e. the value
-     * that was last pushed to the stack.
-     *
-     * @return the value on top of the stack.
-     * @throws ArrayIndexOutOfBoundsException if the stack is empty.
-     */
-    private short peek() {
-        return stack[top];
-    }
-
-    /**
-     * Reduces the stack size by one.
-     */
-    private void pop() {
-        top = Math.max(-1, top - 1);
-
-        sendData();
-    }
-
     /**
      * Update the outputs of the stack, pushing the top value.
      */
     private void stepOutput() {
         // Don't try to write if the stack is empty.
-        if (isEmpty()) {
+        if (stack.isEmpty()) {
             return;
         }
 
         for (final Port port : Port.VALUES) {
             final Pipe sendingPipe = getCasing().getSendingPipe(getFace(), port);
             if (!sendingPipe.isWriting()) {
-                sendingPipe.beginWrite(peek());
+                sendingPipe.beginWrite(stack.peekLast());
             }
         }
     }
@@ -209,7 +172,7 @@ public final class ModuleStack extends AbstractModuleRotatable {
     private void stepInput() {
         for (final Port port : Port.VALUES) {
             // Stop reading if the stack is full.
-            if (isFull()) {
+            if (stack.isFull()) {
                 return;
             }
 
@@ -220,25 +183,35 @@ public final class ModuleStack extends AbstractModuleRotatable {
             }
             if (receivingPipe.canTransfer()) {
                 // Store the value.
-                push(receivingPipe.read());
+                stack.pushLast(receivingPipe.read());
 
                 // Restart all writes to ensure we're outputting the top-most value.
                 cancelWrite();
 
                 // Start reading again right away to read as fast as possible.
-                if (!isFull()) {
+                if (!stack.isFull()) {
                     receivingPipe.beginRead();
                 }
             }
         }
     }
 
+    /**
+     * Send the changes to the stack since we last sent it to clients, if
+     * there are any. Replaces changes queued before that were not sent yet.
+     */
     private void sendData() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeByte(top);
-        for (final short value : stack) {
-            data.writeShort(value);
+        final int flushCount = Network.getFlushCount(getCasing().getCasingWorld());
+        if (flushCount != sentFlushCount) {
+            stack.confirmChanges();
+        }
+        if (!stack.hasNewChanges()) {
+            return;
         }
+        sentFlushCount = flushCount;
+
+        final ByteBuf data = Unpooled.buffer();
+        stack.writeChanges(data);
         getCasing().sendData(getFace(), data, DATA_TYPE_UPDATE);
     }
 
@@ -250,10 +223,11 @@ public final class ModuleStack extends AbstractModuleRotatable {
         GlStateManager.translate(4.5f, 14.5f, 0);
         GlStateManager.color(1f, 1f, 1f, 1f);
 
-        for (int i = 0; i <= top; i++) {
-            FontRendererAPI.drawString(String.format("%4X", stack[i]));
+        // Show the top-most values if there are more than fit.
+        for (int i = Math.max(0, stack.size() - RENDERED_ELEMENTS), j = 0; i < stack.size(); i++, j++) {
+            FontRendererAPI.drawString(String.format("%4X", stack.get(i)));
             GlStateManager.translate(0, FontRendererAPI.getCharHeight() + 1, 0);
-            if ((i + 1) % 4 == 0) {
+            if ((j + 1) % 4 == 0) {
                 GlStateManager.translate((FontRendererAPI.getCharWidth() + 1) * 5, (FontRendererAPI.getCharHeight() + 1) * -4, 0);
             }
         }
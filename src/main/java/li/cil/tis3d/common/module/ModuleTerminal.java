@@ -14,6 +14,7 @@ import li.cil.tis3d.client.renderer.TextureLoader;
 import li.cil.tis3d.client.renderer.font.FontRenderer;
 import li.cil.tis3d.client.renderer.font.FontRendererNormal;
 import li.cil.tis3d.common.TIS3D;
+import li.cil.tis3d.common.network.Network;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.client.renderer.GlStateManager;
@@ -21,7 +22,6 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.init.SoundEvents;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
-import net.minecraft.nbt.NBTTagString;
 import net.minecraft.util.EnumHand;
 import net.minecraft.util.SoundCategory;
 import net.minecraft.world.World;
@@ -34,20 +34,37 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 public final class ModuleTerminal extends AbstractModuleRotatable {
     // --------------------------------------------------------------------- //
     // Persisted data
 
     /**
-     * Current displayed text, line by line.
+     * Current displayed text, as CP437 bytes, row by row.
      * <p>
-     * As a linked list to allow fast removal from head an appending to tail
-     * when scrolling (due to new line coming in and being at bottom of the
-     * terminal screen).
+     * Rows are stored in a ring buffer, to make scrolling (due to new line
+     * coming in and being at bottom of the terminal screen) only advance
+     * the index of the first row, reusing the row scrolled out at the top
+     * as the new row at the bottom.
      */
-    private final LinkedList<StringBuilder> display = new LinkedList<>();
+    private final byte[] display = new byte[MAX_ROWS * MAX_COLUMNS];
+
+    /**
+     * The number of characters in each row of {@link #display}, by index in
+     * the ring buffer.
+     */
+    private final int[] rowLengths = new int[MAX_ROWS];
+
+    /**
+     * The index of the topmost displayed row in the ring buffer.
+     */
+    private int firstRow;
+
+    /**
+     * The number of rows currently displayed.
+     */
+    private int rowCount;
 
     /**
      * Current pending output, single line.
@@ -68,11 +85,15 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
     // Computed data
 
     // NBT tag names.
-    public static final String TAG_DISPLAY = "display";
+    public static final String TAG_DISPLAY = "display"; // Legacy, string per line.
+    public static final String TAG_DISPLAY_ROWS = "displayRows";
+    public static final String TAG_FIRST_ROW = "firstRow";
+    public static final String TAG_DISPLAY_VERSION = "displayVersion";
     public static final String TAG_OUTPUT = "output";
 
     // Data packet types.
     private static final byte DATA_TYPE_INPUT = 0;
+    private static final byte DATA_TYPE_DISPLAY = 1;
 
     // Message types.
     private static final byte PACKET_INPUT = 0;
@@ -88,6 +109,8 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
     private static final Charset UTF_8 = Charset.forName("UTF-8");
     // For short<->char conversion when reading/writing from/to ports.
     private static final Charset CP437 = Charset.forName("Cp437");
+    // For converting displayed text to chars when rendering.
+    private static final char[] CP437_CHARS = new String(createAllBytes(), CP437).toCharArray();
 
     // Reused buffers for converting between CP437 and chars.
     private final ByteBuffer byteBuffer = ByteBuffer.allocate(1);
@@ -95,10 +118,22 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
     private final CharsetDecoder decoder = CP437.newDecoder();
     private final CharsetEncoder encoder = CP437.newEncoder();
 
-    // Buffer for building packet to clients with newly printed characters.
-    private ByteBuf sendBuffer;
-    // Last time we sent the buffer to clients. Only try to send once per tick.
-    private long lastSendTick = 0L;
+    // Bit mask of the rows of the display changed since we last sent it to
+    // clients, by displayed row, i.e. relative to the first row.
+    private int dirtyRows;
+    // Incremented on each change to the display, sent with updates and
+    // stored with the display, so that clients can ignore updates older
+    // than the state they received in bulk.
+    private int displayVersion;
+    // Whether the display changed in the current step, so that we only build
+    // one packet per step, no matter how many characters were printed.
+    private boolean isDisplayChanged;
+    // The Network flush count when we last queued the display for sending.
+    // If it is still the same the queued data has not been sent yet, so
+    // further changes get merged into it.
+    private int dirtyFlushCount = -1;
+    // Reused for converting rows of the display to chars when rendering.
+    private final StringBuilder renderBuffer = new StringBuilder(MAX_COLUMNS);
     // Used on the client only, indicates whether input can currently be set.
     // This is false if the terminal is currently writing previous input to
     // adjacent modules. Only one command at a time can be processed.
@@ -123,22 +158,25 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
             }
         }
 
-        final World world = getCasing().getCasingWorld();
-        if (sendBuffer != null && world.getTotalWorldTime() > lastSendTick) {
-            getCasing().sendData(getFace(), sendBuffer);
-            sendBuffer = null;
+        if (isDisplayChanged) {
+            isDisplayChanged = false;
+            sendDisplayToClient();
         }
-
-        lastSendTick = world.getTotalWorldTime();
     }
 
     @Override
     public void onDisabled() {
-        display.clear();
+        clearDisplay();
         output.setLength(0);
 
+        // Anything queued before is wiped by the clear.
+        dirtyRows = 0;
+        isDisplayChanged = false;
+        displayVersion++;
+
         final ByteBuf data = Unpooled.buffer();
         data.writeByte(PACKET_CLEAR);
+        data.writeInt(displayVersion);
         getCasing().sendData(getFace(), data);
     }
 
@@ -196,12 +234,13 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
                     }
                     break;
                 case PACKET_DISPLAY:
-                    while (data.isReadable()) {
-                        writeToDisplay(data.readChar());
-                    }
+                    readDisplay(data);
                     break;
                 case PACKET_CLEAR:
-                    display.clear();
+                    if (!isNewerDisplayVersion(data.readInt())) {
+                        break;
+                    }
+                    clearDisplay();
                     output.setLength(0);
                     input.setLength(0);
                     isInputEnabled = true;
@@ -241,12 +280,34 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
     public void readFromNBT(final NBTTagCompound nbt) {
         super.readFromNBT(nbt);
 
-        final NBTTagList lines = nbt.getTagList(TAG_DISPLAY, Constants.NBT.TAG_STRING);
-        display.clear();
-        for (int tagIndex = 0; tagIndex < lines.tagCount(); tagIndex++) {
-            display.add(new StringBuilder(lines.getStringTagAt(tagIndex)));
+        clearDisplay();
+        if (nbt.hasKey(TAG_DISPLAY_ROWS, Constants.NBT.TAG_BYTE_ARRAY)) {
+            // Keep rows where they were in the ring buffer, updates sent
+            // to clients refer to rows by their index in it.
+            firstRow = Math.floorMod(nbt.getInteger(TAG_FIRST_ROW), MAX_ROWS);
+            final byte[] rows = nbt.getByteArray(TAG_DISPLAY_ROWS);
+            int offset = 0;
+            while (offset < rows.length && rowCount < MAX_ROWS) {
+                final int index = getRowIndex(rowCount++);
+                final int length = Math.min(MAX_COLUMNS, Math.min(rows[offset++] & 0xFF, rows.length - offset));
+                System.arraycopy(rows, offset, display, index * MAX_COLUMNS, length);
+                rowLengths[index] = length;
+                offset += length;
+            }
+        } else {
+            final NBTTagList lines = nbt.getTagList(TAG_DISPLAY, Constants.NBT.TAG_STRING);
+            for (int tagIndex = Math.max(0, lines.tagCount() - MAX_ROWS); tagIndex < lines.tagCount(); tagIndex++) {
+                final String line = lines.getStringTagAt(tagIndex);
+                final int length = Math.min(MAX_COLUMNS, line.length());
+                for (int column = 0; column < length; column++) {
+                    display[rowCount * MAX_COLUMNS + column] = (byte) toShort(line.charAt(column));
+                }
+                rowLengths[rowCount++] = length;
+            }
         }
 
+        displayVersion = nbt.getInteger(TAG_DISPLAY_VERSION);
+
         output.setLength(0);
         output.append(nbt.getString(TAG_OUTPUT));
         isInputEnabled = output.length() == 0;
@@ -256,11 +317,15 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
     public void writeToNBT(final NBTTagCompound nbt) {
         super.writeToNBT(nbt);
 
-        final NBTTagList lines = new NBTTagList();
-        for (final StringBuilder line : display) {
-            lines.appendTag(new NBTTagString(line.toString()));
+        final ByteBuf rows = Unpooled.buffer();
+        for (int row = 0; row < rowCount; row++) {
+            writeRow(rows, row);
         }
-        nbt.setTag(TAG_DISPLAY, lines);
+        final byte[] rowsNbt = new byte[rows.readableBytes()];
+        rows.readBytes(rowsNbt);
+        nbt.setByteArray(TAG_DISPLAY_ROWS, rowsNbt);
+        nbt.setInteger(TAG_FIRST_ROW, firstRow);
+        nbt.setInteger(TAG_DISPLAY_VERSION, displayVersion);
 
         nbt.setString(TAG_OUTPUT, output.toString());
     }
@@ -274,9 +339,7 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
             receivingPipe.beginRead();
         }
         if (receivingPipe.canTransfer()) {
-            final char ch = toChar(receivingPipe.read());
-            writeToDisplay(ch);
-            sendDisplayToClient(ch);
+            writeToDisplay((byte) receivingPipe.read());
 
             // Start reading again right away to read as fast as possible.
             receivingPipe.beginRead();
@@ -307,14 +370,19 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
 
         renderDisplay(fontRenderer);
 
-        GlStateManager.translate(0, (MAX_ROWS - display.size()) * fontRenderer.getCharHeight() + 4, 0);
+        GlStateManager.translate(0, (MAX_ROWS - rowCount) * fontRenderer.getCharHeight() + 4, 0);
 
         renderInput(fontRenderer, textWidth);
     }
 
     private void renderDisplay(final FontRenderer fontRenderer) {
-        for (final StringBuilder line : display) {
-            fontRenderer.drawString(line);
+        for (int row = 0; row < rowCount; row++) {
+            final int index = getRowIndex(row);
+            renderBuffer.setLength(0);
+            for (int column = 0; column < rowLengths[index]; column++) {
+                renderBuffer.append(CP437_CHARS[display[index * MAX_COLUMNS + column] & 0xFF]);
+            }
+            fontRenderer.drawString(renderBuffer);
             GlStateManager.translate(0, fontRenderer.getCharHeight(), 0);
         }
     }
@@ -370,12 +438,70 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
         getCasing().sendData(getFace(), response, DATA_TYPE_INPUT);
     }
 
-    private void sendDisplayToClient(final char ch) {
-        if (sendBuffer == null) {
-            sendBuffer = Unpooled.buffer();
-            sendBuffer.writeByte(PACKET_DISPLAY);
+    /**
+     * Send the changes to the display since we last sent it to clients.
+     * <p>
+     * Changes are accumulated until they have been sent, replacing the
+     * previously queued data, so that clients get at most one update per
+     * tick. The data contains the version of the display, the index of the
+     * first row, the number of displayed rows and the bit mask of changed
+     * rows, followed by the changed rows, each as its length and its CP437
+     * bytes. Everything but the changed rows is absolute, so the data can
+     * be applied on top of any older state, no matter where it came from.
+     */
+    private void sendDisplayToClient() {
+        final ByteBuf data = Unpooled.buffer();
+        data.writeByte(PACKET_DISPLAY);
+        data.writeInt(displayVersion);
+        data.writeByte(firstRow);
+        data.writeByte(rowCount);
+        data.writeInt(dirtyRows);
+        for (int row = 0; row < rowCount; row++) {
+            if ((dirtyRows & (1 << row)) != 0) {
+                writeRow(data, row);
+            }
         }
-        sendBuffer.writeChar(ch);
+        getCasing().sendData(getFace(), data, DATA_TYPE_DISPLAY);
+    }
+
+    private void readDisplay(final ByteBuf data) {
+        // Already got this or a newer state, e.g. in bulk with the chunk.
+        if (!isNewerDisplayVersion(data.readInt())) {
+            return;
+        }
+
+        firstRow = data.readUnsignedByte() % MAX_ROWS;
+        rowCount = Math.min(MAX_ROWS, data.readUnsignedByte());
+        final int changedRows = data.readInt();
+        for (int row = 0; row < rowCount; row++) {
+            if ((changedRows & (1 << row)) != 0) {
+                final int index = getRowIndex(row);
+                final int length = Math.min(MAX_COLUMNS, data.readUnsignedByte());
+                data.readBytes(display, index * MAX_COLUMNS, length);
+                rowLengths[index] = length;
+            }
+        }
+    }
+
+    /**
+     * Check whether the specified version of the display received from the
+     * server is newer than the one we have, remembering it if so.
+     *
+     * @param version the version of the received display data.
+     * @return <tt>true</tt> if the received data is newer; <tt>false</tt> otherwise.
+     */
+    private boolean isNewerDisplayVersion(final int version) {
+        if (version - displayVersion <= 0) {
+            return false;
+        }
+        displayVersion = version;
+        return true;
+    }
+
+    private void writeRow(final ByteBuf data, final int row) {
+        final int index = getRowIndex(row);
+        data.writeByte(rowLengths[index]);
+        data.writeBytes(display, index * MAX_COLUMNS, rowLengths[index]);
     }
 
     private void sendInputToServer() {
@@ -431,24 +557,66 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
         }
     }
 
-    private void writeToDisplay(final char ch) {
-        if (display.isEmpty()) {
-            display.add(new StringBuilder());
+    private void writeToDisplay(final byte value) {
+        beginDisplayChange();
+
+        if (rowCount == 0) {
+            newLine();
         }
 
+        final int ch = value & 0xFF;
         if (ch == 0x07 /* '\a' */) {
             bell();
         } else if (ch == '\b') {
-            backspace(display.getLast());
+            final int index = getRowIndex(rowCount - 1);
+            if (rowLengths[index] > 0) {
+                rowLengths[index]--;
+            }
         } else if (ch == '\t') {
             wrapIfNecessary();
-            tab(display.getLast());
+            final int index = getRowIndex(rowCount - 1);
+            if (rowLengths[index] < MAX_COLUMNS) {
+                do {
+                    display[index * MAX_COLUMNS + rowLengths[index]++] = ' ';
+                }
+                while (rowLengths[index] % TAB_WIDTH != 0 &&
+                        rowLengths[index] < MAX_COLUMNS);
+            }
         } else if (ch == '\n' || ch == '\r') {
             newLine();
         } else {
             wrapIfNecessary();
-            character(display.getLast(), ch);
+            final int index = getRowIndex(rowCount - 1);
+            if (rowLengths[index] < MAX_COLUMNS) {
+                display[index * MAX_COLUMNS + rowLengths[index]++] = value;
+            }
         }
+
+        dirtyRows |= 1 << (rowCount - 1);
+    }
+
+    /**
+     * Called before changing the display, starts tracking changes anew if
+     * the changes tracked so far have been sent to clients.
+     */
+    private void beginDisplayChange() {
+        final int flushCount = Network.getFlushCount(getCasing().getCasingWorld());
+        if (flushCount != dirtyFlushCount) {
+            dirtyFlushCount = flushCount;
+            dirtyRows = 0;
+        }
+        displayVersion++;
+        isDisplayChanged = true;
+    }
+
+    private int getRowIndex(final int row) {
+        return (firstRow + row) % MAX_ROWS;
+    }
+
+    private void clearDisplay() {
+        Arrays.fill(rowLengths, 0);
+        firstRow = 0;
+        rowCount = 0;
     }
 
     // Called from the invisible GUI used to capture output.
@@ -494,22 +662,29 @@ public final class ModuleTerminal extends AbstractModuleRotatable {
     }
 
     private void wrapIfNecessary() {
-        if (display.getLast().length() >= MAX_COLUMNS) {
+        if (rowLengths[getRowIndex(rowCount - 1)] >= MAX_COLUMNS) {
             newLine();
         }
     }
 
     private void newLine() {
-        StringBuilder line = null;
-        while (display.size() >= MAX_ROWS) {
-            line = display.removeFirst();
-        }
-        if (line == null) {
-            line = new StringBuilder();
+        if (rowCount >= MAX_ROWS) {
+            // Scroll, reusing the top row as the new bottom row.
+            firstRow = (firstRow + 1) % MAX_ROWS;
+            dirtyRows >>>= 1;
         } else {
-            line.setLength(0);
+            rowCount++;
+        }
+        rowLengths[getRowIndex(rowCount - 1)] = 0;
+        dirtyRows |= 1 << (rowCount - 1);
+    }
+
+    private static byte[] createAllBytes() {
+        final byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
         }
-        display.addLast(line);
+        return bytes;
     }
 
     // --------------------------------------------------------------------- //
@@ -72,6 +72,15 @@ public final class MachineState {
      */
     public final HashMap<Integer, Integer> lineNumbers = new HashMap<>(Settings.maxLinesPerProgram);
 
+    /**
+     * The {@link #code} joined into a single string for saving, and the array
+     * it was built from. Code is only ever replaced as a whole when compiling,
+     * so we can keep reusing this until that happens, instead of joining all
+     * lines again every time we're saved or synchronized.
+     */
+    private String codeJoined;
+    private String[] codeJoinedFrom;
+
     // --------------------------------------------------------------------- //
 
     /**
@@ -112,13 +121,22 @@ public final class MachineState {
 
     public void readFromNBT(final NBTTagCompound nbt) {
         if (nbt.hasKey(TAG_CODE)) {
-            try {
-                Compiler.compile(Arrays.asList(Constants.PATTERN_LINES.split(nbt.getString(TAG_CODE))), this);
-            } catch (final ParseException ignored) {
-                // Silent because this is also used to send code to the
-                // clients to visualize errors, and code is also saved
-                // in errored state.
+            final String codeNbt = nbt.getString(TAG_CODE);
+            // Skip compilation if we already hold that exact program, which is
+            // the usual case when receiving state updates for existing modules.
+            if (code == null || !codeNbt.equals(getCodeJoined())) {
+                try {
+                    Compiler.compile(Arrays.asList(Constants.PATTERN_LINES.split(codeNbt)), this);
+                } catch (final ParseException ignored) {
+                    // Silent because this is also used to send code to the
+                    // clients to visualize errors, and code is also saved
+                    // in errored state.
+                }
+            } else {
+                reset();
             }
+        } else {
+            clear();
         }
 
         pc = nbt.getInteger(TAG_PC);
@@ -140,7 +158,17 @@ public final class MachineState {
         last.ifPresent(port -> EnumUtils.writeToNBT(port, TAG_LAST, nbt));
 
         if (code != null) {
-            nbt.setString(TAG_CODE, String.join("\n", (CharSequence[]) code));
+            nbt.setString(TAG_CODE, getCodeJoined());
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private String getCodeJoined() {
+        if (codeJoinedFrom != code) {
+            codeJoined = String.join("\n", (CharSequence[]) code);
+            codeJoinedFrom = code;
         }
+        return codeJoined;
     }
 }
@@ -9,10 +9,12 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.client.network.handler.MessageHandlerCasingEnabledState;
 import li.cil.tis3d.client.network.handler.MessageHandlerCasingInventory;
 import li.cil.tis3d.client.network.handler.MessageHandlerCasingLockedState;
+import li.cil.tis3d.client.network.handler.MessageHandlerCasingStates;
 import li.cil.tis3d.client.network.handler.MessageHandlerHaltAndCatchFire;
 import li.cil.tis3d.client.network.handler.MessageHandlerParticleEffects;
 import li.cil.tis3d.client.network.handler.MessageHandlerReceivingPipeLockedState;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.machine.CasingProxy;
 import li.cil.tis3d.common.network.handler.MessageHandlerBookCodeData;
 import li.cil.tis3d.common.network.handler.MessageHandlerCasingData;
 import li.cil.tis3d.common.network.message.MessageBookCodeData;
@@ -20,10 +22,12 @@ import li.cil.tis3d.common.network.message.MessageCasingData;
 import li.cil.tis3d.common.network.message.MessageCasingEnabledState;
 import li.cil.tis3d.common.network.message.MessageCasingInventory;
 import li.cil.tis3d.common.network.message.MessageCasingLockedState;
+import li.cil.tis3d.common.network.message.MessageCasingStates;
 import li.cil.tis3d.common.network.message.MessageHaltAndCatchFire;
 import li.cil.tis3d.common.network.message.MessageParticleEffect;
 import li.cil.tis3d.common.network.message.MessageReceivingPipeLockedState;
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
@@ -43,6 +47,7 @@ import net.minecraftforge.fml.relauncher.Side;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -50,6 +55,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.function.Consumer;
 
 /**
  * Central networking hub for TIS-3D.
@@ -77,7 +83,8 @@ public final class Network {
         HaltAndCatchFire,
         CasingLockedState,
         ReceivingPipeLockedState,
-        CasingInventory
+        CasingInventory,
+        CasingStates
     }
 
     // --------------------------------------------------------------------- //
@@ -91,6 +98,7 @@ public final class Network {
         wrapper.registerMessage(MessageHandlerCasingEnabledState.class, MessageCasingEnabledState.class, Messages.CasingEnabledState.ordinal(), Side.CLIENT);
         wrapper.registerMessage(MessageHandlerCasingLockedState.class, MessageCasingLockedState.class, Messages.CasingLockedState.ordinal(), Side.CLIENT);
         wrapper.registerMessage(MessageHandlerCasingInventory.class, MessageCasingInventory.class, Messages.CasingInventory.ordinal(), Side.CLIENT);
+        wrapper.registerMessage(MessageHandlerCasingStates.class, MessageCasingStates.class, Messages.CasingStates.ordinal(), Side.CLIENT);
         wrapper.registerMessage(MessageHandlerHaltAndCatchFire.class, MessageHaltAndCatchFire.class, Messages.HaltAndCatchFire.ordinal(), Side.CLIENT);
         wrapper.registerMessage(MessageHandlerParticleEffects.class, MessageParticleEffect.class, Messages.ParticleEffects.ordinal(), Side.CLIENT);
         wrapper.registerMessage(MessageHandlerReceivingPipeLockedState.class, MessageReceivingPipeLockedState.class, Messages.ReceivingPipeLockedState.ordinal(), Side.CLIENT);
@@ -124,6 +132,40 @@ public final class Network {
         getQueueFor(casing).queueData(face, data, type);
     }
 
+    /**
+     * Queue data for the module on the specified face that is only written
+     * when the queue is flushed. Useful for modules that may change many times
+     * before data is sent, to only serialize their changes once.
+     * <p>
+     * Like other typed data, only the data last queued of each type is sent.
+     *
+     * @param casing the casing the module is installed in.
+     * @param face   the face the module is installed on.
+     * @param writer called with the buffer to write the data to when sending.
+     * @param type   the type of the data.
+     */
+    public static void sendModuleData(final Casing casing, final Face face, final Consumer<ByteBuf> writer, final byte type) {
+        // Modules get the tile entity as their casing, use the same queue as
+        // data sent via the casing itself.
+        final Casing actualCasing = casing instanceof CasingProxy ? ((CasingProxy) casing).getCasing() : casing;
+        getQueueFor(actualCasing).queueData(face, writer, type);
+    }
+
+    /**
+     * Get the number of times queued module data has been sent so far on the
+     * side of the specified world.
+     * <p>
+     * Modules can use this to tell whether data they queued earlier is still
+     * waiting to be sent, in which case they may merge new changes into it
+     * instead of queueing additional data.
+     *
+     * @param world the world to get the count for.
+     * @return the number of times module data was flushed.
+     */
+    public static int getFlushCount(final World world) {
+        return world.isRemote ? flushCountClient : flushCountServer;
+    }
+
     public static void sendPipeEffect(final World world, final double x, final double y, final double z) {
         final BlockPos position = new BlockPos(x, y, z);
         if (!world.isBlockLoaded(position)) {
@@ -137,6 +179,22 @@ public final class Network {
         queueParticleEffect(world, (float) x, (float) y, (float) z);
     }
 
+    /**
+     * Send the particle effect of an infrared packet traveling through the
+     * specified position.
+     * <p>
+     * Infrared effects are collected per world and sent once per tick, as a
+     * single message per player containing all effects near that player.
+     *
+     * @param world the world the packet travels in.
+     * @param x     the x coordinate of the effect.
+     * @param y     the y coordinate of the effect.
+     * @param z     the z coordinate of the effect.
+     */
+    public static void sendInfraredEffect(final World world, final double x, final double y, final double z) {
+        infraredEffects.computeIfAbsent(world, w -> new ParticleBatch()).add((float) x, (float) y, (float) z);
+    }
+
     // --------------------------------------------------------------------- //
     // Message flushing
 
@@ -145,6 +203,7 @@ public final class Network {
         if (event.type == TickEvent.Type.SERVER && event.getPhase() == EventPriority.NORMAL) {
             flushCasingQueues(Side.SERVER);
             flushParticleQueue();
+            flushInfraredEffects();
         }
     }
 
@@ -189,6 +248,73 @@ public final class Network {
         particleQueue.clear();
     }
 
+    private static final Map<World, ParticleBatch> infraredEffects = new HashMap<>();
+
+    private static void flushInfraredEffects() {
+        infraredEffects.entrySet().removeIf(entry -> {
+            final ParticleBatch batch = entry.getValue();
+            if (batch.count == 0) {
+                // Nothing sent in a whole tick, don't hold on to the world.
+                return true;
+            }
+            batch.sendMessages(entry.getKey());
+            return false;
+        });
+    }
+
+    /**
+     * Positions of particle effects collected in a single world, sent to each
+     * player in that world as one message containing the effects near them.
+     */
+    private static final class ParticleBatch {
+        private float[] positions = new float[3 * 16];
+        private int count;
+
+        // Reused for collecting the positions near a single player.
+        private float[] nearPositions = new float[3 * 16];
+
+        public void add(final float x, final float y, final float z) {
+            if (count * 3 == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[count * 3] = x;
+            positions[count * 3 + 1] = y;
+            positions[count * 3 + 2] = z;
+            count++;
+        }
+
+        public void sendMessages(final World world) {
+            for (final EntityPlayer player : world.playerEntities) {
+                if (!(player instanceof EntityPlayerMP)) {
+                    continue;
+                }
+
+                int nearCount = 0;
+                for (int i = 0; i < count; i++) {
+                    final float x = positions[i * 3];
+                    final float y = positions[i * 3 + 1];
+                    final float z = positions[i * 3 + 2];
+                    if (player.getDistanceSq(x, y, z) < RANGE_LOW * RANGE_LOW) {
+                        if (nearCount * 3 == nearPositions.length) {
+                            nearPositions = Arrays.copyOf(nearPositions, nearPositions.length * 2);
+                        }
+                        nearPositions[nearCount * 3] = x;
+                        nearPositions[nearCount * 3 + 1] = y;
+                        nearPositions[nearCount * 3 + 2] = z;
+                        nearCount++;
+                    }
+                }
+
+                if (nearCount > 0) {
+                    final float[] messagePositions = Arrays.copyOf(nearPositions, nearCount * 3);
+                    final MessageParticleEffect message = new MessageParticleEffect(world, EnumParticleTypes.REDSTONE, messagePositions, nearCount);
+                    Network.INSTANCE.getWrapper().sendTo(message, (EntityPlayerMP) player);
+                }
+            }
+            count = 0;
+        }
+    }
+
     /**
      * Track dimensional position of particle emission for culling duplicates
      * when currently throttling.
@@ -290,6 +416,8 @@ public final class Network {
     // Module data queueing
 
     private static final Stack<CasingSendQueue> queuePool = new Stack<>();
+    private static int flushCountServer = 0;
+    private static int flushCountClient = 0;
     private static final Map<Casing, CasingSendQueue> clientQueues = new HashMap<>();
     private static final Map<Casing, CasingSendQueue> serverQueues = new HashMap<>();
 
@@ -331,6 +459,12 @@ public final class Network {
         queues.forEach(Network::flushCasingQueue);
         clearQueues(queues);
 
+        if (side == Side.CLIENT) {
+            flushCountClient++;
+        } else {
+            flushCountServer++;
+        }
+
         final int sent = getPacketsSent(side);
         if (sent > Settings.maxPacketsPerTick) {
             final int throttle = (int) Math.min(40, Math.ceil(sent / (float) Settings.maxPacketsPerTick));
@@ -369,6 +503,10 @@ public final class Network {
             moduleQueues[face.ordinal()].queueData(data, type);
         }
 
+        public void queueData(final Face face, final Consumer<ByteBuf> writer, final byte type) {
+            moduleQueues[face.ordinal()].queueData(writer, type);
+        }
+
         /**
          * Flush the casing's queue, sending all queued packets to clients.
          *
@@ -435,6 +573,16 @@ public final class Network {
             sendQueue.add(new QueueEntryByteBuf(type, data));
         }
 
+        /**
+         * Enqueue a data packet written when sending.
+         *
+         * @param writer the callback writing the data.
+         * @param type   the type of the data.
+         */
+        public void queueData(final Consumer<ByteBuf> writer, final byte type) {
+            sendQueue.add(new QueueEntryDeferred(type, writer));
+        }
+
         /**
          * Collect all data in a tag list and clear the queue.
          *
@@ -537,6 +685,29 @@ public final class Network {
                 }
             }
         }
+
+        /**
+         * Queue entry for raw data written only when sending.
+         */
+        private static final class QueueEntryDeferred extends QueueEntry {
+            public final Consumer<ByteBuf> writer;
+
+            public QueueEntryDeferred(final byte type, final Consumer<ByteBuf> writer) {
+                super(type);
+                this.writer = writer;
+            }
+
+            @Override
+            public void write(final ByteBuf buffer) {
+                final ByteBuf data = Unpooled.buffer();
+                writer.accept(data);
+                if (data.readableBytes() > 0) {
+                    buffer.writeBoolean(false);
+                    ByteBufUtils.writeVarShort(buffer, data.readableBytes());
+                    buffer.writeBytes(data);
+                }
+            }
+        }
     }
 
     // --------------------------------------------------------------------- //
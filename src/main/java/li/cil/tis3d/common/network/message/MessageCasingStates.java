@@ -0,0 +1,60 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import li.cil.tis3d.common.TIS3D;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+
+import java.io.IOException;
+
+/**
+ * Carries the module state of a batch of casings in one dimension, compressed
+ * as a whole, instead of sending each casing's state in its own packet.
+ */
+public final class MessageCasingStates extends AbstractMessageWithDimension {
+    private NBTTagCompound states;
+
+    public MessageCasingStates(final World world, final NBTTagCompound states) {
+        super(world);
+        this.states = states;
+    }
+
+    @SuppressWarnings("unused") // For deserialization.
+    public MessageCasingStates() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    public NBTTagCompound getStates() {
+        return states;
+    }
+
+    // --------------------------------------------------------------------- //
+    // IMessage
+
+    @Override
+    public void fromBytes(final ByteBuf buf) {
+        super.fromBytes(buf);
+
+        try {
+            states = CompressedStreamTools.readCompressed(new ByteBufInputStream(buf));
+        } catch (final IOException e) {
+            TIS3D.getLog().warn("Failed parsing received casing states.", e);
+            states = new NBTTagCompound();
+        }
+    }
+
+    @Override
+    public void toBytes(final ByteBuf buf) {
+        super.toBytes(buf);
+
+        try {
+            CompressedStreamTools.writeCompressed(states, new ByteBufOutputStream(buf));
+        } catch (final IOException e) {
+            TIS3D.getLog().warn("Failed writing casing states.", e);
+        }
+    }
+}
@@ -9,16 +9,22 @@ import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 public final class MessageParticleEffect implements IMessage {
     private int dimension;
     private EnumParticleTypes particleType;
-    private double x;
-    private double y;
-    private double z;
+    private int count;
+
+    /**
+     * The positions of the particles to spawn, as x, y, z per particle.
+     */
+    private float[] positions;
 
     public MessageParticleEffect(final World world, final EnumParticleTypes particleType, final double x, final double y, final double z) {
+        this(world, particleType, new float[]{(float) x, (float) y, (float) z}, 1);
+    }
+
+    public MessageParticleEffect(final World world, final EnumParticleTypes particleType, final float[] positions, final int count) {
         this.dimension = world.provider.getDimension();
         this.particleType = particleType;
-        this.x = x;
-        this.y = y;
-        this.z = z;
+        this.count = count;
+        this.positions = positions;
     }
 
     @SuppressWarnings("unused") // For deserialization.
@@ -35,16 +41,20 @@ public final class MessageParticleEffect implements IMessage {
         return particleType;
     }
 
-    public double getX() {
-        return x;
+    public int getCount() {
+        return count;
+    }
+
+    public double getX(final int index) {
+        return positions[index * 3];
     }
 
-    public double getY() {
-        return y;
+    public double getY(final int index) {
+        return positions[index * 3 + 1];
     }
 
-    public double getZ() {
-        return z;
+    public double getZ(final int index) {
+        return positions[index * 3 + 2];
     }
 
     // --------------------------------------------------------------------- //
@@ -55,9 +65,11 @@ public final class MessageParticleEffect implements IMessage {
         final PacketBuffer buffer = new PacketBuffer(buf);
         dimension = buffer.readInt();
         particleType = buffer.readEnumValue(EnumParticleTypes.class);
-        x = buffer.readDouble();
-        y = buffer.readDouble();
-        z = buffer.readDouble();
+        count = buffer.readVarInt();
+        positions = new float[count * 3];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = buffer.readFloat();
+        }
     }
 
     @Override
@@ -65,8 +77,9 @@ public final class MessageParticleEffect implements IMessage {
         final PacketBuffer buffer = new PacketBuffer(buf);
         buffer.writeInt(dimension);
         buffer.writeEnumValue(particleType);
-        buffer.writeDouble(x);
-        buffer.writeDouble(y);
-        buffer.writeDouble(z);
+        buffer.writeVarInt(count);
+        for (int i = 0; i < count * 3; i++) {
+            buffer.writeFloat(positions[i]);
+        }
     }
 }
@@ -0,0 +1,127 @@
+package li.cil.tis3d.common.tileentity;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of which controllers last scanned which casing, per world.
+ * <p>
+ * Casings only know their controller while it is operational. When a casing
+ * without controller changes, this allows notifying the controllers that
+ * found it in their last scan directly, even if they ended up in an error
+ * state, instead of searching the multi-block for them. A casing may have
+ * been found by more than one controller, e.g. when two controllers reached
+ * the same casings, so all of them are remembered.
+ * <p>
+ * Entries are maintained by the controllers; casings only remove themselves
+ * when they are removed from the world.
+ */
+public final class ControllerIndex {
+    public static final ControllerIndex INSTANCE = new ControllerIndex();
+
+    // --------------------------------------------------------------------- //
+
+    private final Map<World, Map<BlockPos, Set<TileEntityController>>> controllers = new HashMap<>();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the controllers that last found a casing at the specified position.
+     *
+     * @param world    the world the casing lives in.
+     * @param position the position of the casing.
+     * @return the controllers of the casing; empty if not known.
+     */
+    List<TileEntityController> get(final World world, final BlockPos position) {
+        final Map<BlockPos, Set<TileEntityController>> worldControllers = controllers.get(world);
+        if (worldControllers == null) {
+            return Collections.emptyList();
+        }
+
+        final Set<TileEntityController> positionControllers = worldControllers.get(position);
+        if (positionControllers == null) {
+            return Collections.emptyList();
+        }
+
+        final List<TileEntityController> result = new ArrayList<>(positionControllers.size());
+        final Iterator<TileEntityController> iterator = positionControllers.iterator();
+        while (iterator.hasNext()) {
+            final TileEntityController controller = iterator.next();
+            if (controller.isInvalid()) {
+                iterator.remove();
+            } else {
+                result.add(controller);
+            }
+        }
+        if (positionControllers.isEmpty()) {
+            worldControllers.remove(position);
+        }
+        return result;
+    }
+
+    /**
+     * Remember a controller that found a casing at the specified position.
+     *
+     * @param world      the world the casing lives in.
+     * @param position   the position of the casing.
+     * @param controller the controller that found the casing.
+     */
+    void put(final World world, final BlockPos position, final TileEntityController controller) {
+        final Map<BlockPos, Set<TileEntityController>> worldControllers = controllers.computeIfAbsent(world, w -> new HashMap<>());
+        worldControllers.computeIfAbsent(position, p -> new LinkedHashSet<>()).add(controller);
+    }
+
+    /**
+     * Forget all controllers of the casing at the specified position.
+     *
+     * @param world    the world the casing lives in.
+     * @param position the position of the casing.
+     */
+    void remove(final World world, final BlockPos position) {
+        final Map<BlockPos, Set<TileEntityController>> worldControllers = controllers.get(world);
+        if (worldControllers != null) {
+            worldControllers.remove(position);
+        }
+    }
+
+    /**
+     * Forget the specified controller as a controller of the casing at the
+     * specified position, keeping any other controllers that found it.
+     *
+     * @param world      the world the casing lives in.
+     * @param position   the position of the casing.
+     * @param controller the controller to remove.
+     */
+    void remove(final World world, final BlockPos position, final TileEntityController controller) {
+        final Map<BlockPos, Set<TileEntityController>> worldControllers = controllers.get(world);
+        if (worldControllers != null) {
+            final Set<TileEntityController> positionControllers = worldControllers.get(position);
+            if (positionControllers != null && positionControllers.remove(controller) && positionControllers.isEmpty()) {
+                worldControllers.remove(position);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @SubscribeEvent
+    public void onWorldUnload(final WorldEvent.Unload event) {
+        controllers.remove(event.getWorld());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ControllerIndex() {
+    }
+}
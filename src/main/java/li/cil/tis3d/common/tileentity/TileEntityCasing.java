@@ -16,6 +16,7 @@ import li.cil.tis3d.common.inventory.InventoryCasing;
 import li.cil.tis3d.common.inventory.SidedInventoryProxy;
 import li.cil.tis3d.common.machine.CasingImpl;
 import li.cil.tis3d.common.machine.CasingProxy;
+import li.cil.tis3d.common.machine.PipeImpl;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.MessageCasingEnabledState;
 import li.cil.tis3d.common.network.message.MessageCasingLockedState;
@@ -39,6 +40,7 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 import javax.annotation.Nullable;
 import java.util.ArrayDeque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
@@ -51,7 +53,7 @@ import java.util.Set;
  * two casing blocks to relay data between the casings).
  * <p>
  * Also takes care of notifying a connected controller if some state changed,
- * so that the controller can re-scan for a multi-block.
+ * so that the controller can update the multi-block.
  * <p>
  * Casings do not tick. The modules installed in them are driven by a
  * controller (transitively) connected to their casing.
@@ -82,6 +84,12 @@ public final class TileEntityCasing extends TileEntityComputer implements
     private boolean isEnabled;
     private boolean redstoneDirty = true;
 
+    /**
+     * The index of this casing in the step order of its controller, or -1
+     * when not part of a multi-block. Managed by the controller.
+     */
+    int partIndex = -1;
+
     // --------------------------------------------------------------------- //
 
     /**
@@ -118,6 +126,10 @@ public final class TileEntityCasing extends TileEntityComputer implements
         if (isReceivingPipeLocked(face, port) != value) {
             getReceivingPipe(face, port).cancelRead();
             locked[face.ordinal()][port.ordinal()] = value;
+            relinkForwarder(face);
+            if (getController() != null) {
+                getController().onEdgeChanged(this, face, port);
+            }
             sendReceivingPipeLockedState(face, port);
         }
     }
@@ -130,6 +142,7 @@ public final class TileEntityCasing extends TileEntityComputer implements
      * @param port the port of the receiving pipe to get the locked state for.
      * @return <code>true</code> if the port is locked; <code>false</code> otherwise.
      */
+    @Override
     public boolean isReceivingPipeLocked(final Face face, final Port port) {
         return locked[face.ordinal()][port.ordinal()];
     }
@@ -143,6 +156,12 @@ public final class TileEntityCasing extends TileEntityComputer implements
     }
 
     public void setController(@Nullable final TileEntityController controller) {
+        if (controller != this.controller) {
+            // Nobody left to flush our dirty state for us, or a new controller
+            // that does not know of it; either way, apply it right away.
+            casing.flushDirty();
+            partIndex = -1;
+        }
         this.controller = controller;
     }
 
@@ -155,10 +174,17 @@ public final class TileEntityCasing extends TileEntityComputer implements
         } else {
             // If we don't have a controller there either isn't one, or
             // the controller is in an error state. In the latter case we
-            // have ot actively look for a controller and notify it.
-            final TileEntityController controller = findController();
-            if (controller != null) {
-                controller.scheduleScan();
+            // have ot actively look for a controller and notify it. Try
+            // the controllers that found us in their last scan first, all
+            // of them, since more than one may have reached us.
+            final List<TileEntityController> controllers = ControllerIndex.INSTANCE.get(getWorld(), getPos());
+            if (controllers.isEmpty()) {
+                final TileEntityController controller = findController();
+                if (controller != null) {
+                    controller.scheduleScan();
+                }
+            } else {
+                controllers.forEach(TileEntityController::scheduleScan);
             }
         }
     }
@@ -205,12 +231,15 @@ public final class TileEntityCasing extends TileEntityComputer implements
         }
     }
 
-    public void stepModules() {
-        casing.stepModules();
+    public void flushDirty() {
+        casing.flushDirty();
     }
 
     public void setModule(final Face face, @Nullable final Module module) {
         casing.setModule(face, module);
+        if (getController() != null) {
+            getController().onModulesChanged();
+        }
     }
 
     public void lock(final ItemStack stack) {
@@ -246,14 +275,28 @@ public final class TileEntityCasing extends TileEntityComputer implements
         if (neighbors[face.ordinal()] != null) {
             InventoryUtils.drop(getWorld(), getPos(), this, face.ordinal(), getInventoryStackLimit(), Face.toEnumFacing(face));
         }
+    }
 
-        if (neighbor instanceof TileEntityController) {
-            // If we have a controller and it's not our controller, tell our
-            // controller to do a re-scan (because now we have more than one
-            // controller, which is invalid).
-            if (getController() != neighbor && getController() != null) {
-                getController().scheduleScan();
-            }
+    @Override
+    protected void onNeighborChanged(@Nullable final TileEntityComputer oldNeighbor, @Nullable final TileEntityComputer neighbor) {
+        if (getController() != null) {
+            getController().onPartNeighborChanged(oldNeighbor, neighbor);
+        } else {
+            scheduleScan();
+        }
+    }
+
+    @Override
+    protected void onPipeActivated(final PipeImpl pipe) {
+        if (getController() != null) {
+            getController().schedulePipe(pipe);
+        }
+    }
+
+    @Override
+    protected void onEdgeActivated(final Face face, final Port port) {
+        if (getController() != null) {
+            getController().scheduleEdge(this, face, port);
         }
     }
 
@@ -316,6 +359,7 @@ public final class TileEntityCasing extends TileEntityComputer implements
 
         if (!getWorld().isRemote) {
             onDisabled();
+            ControllerIndex.INSTANCE.remove(getWorld(), getPos());
         }
         dispose();
     }
@@ -360,6 +404,38 @@ public final class TileEntityCasing extends TileEntityComputer implements
         super.writeToNBTForClient(nbt);
 
         nbt.setBoolean(TAG_ENABLED, isEnabled);
+
+        // Needed on the client also, to allow initializing client side modules
+        // immediately after creation.
+        final NBTTagCompound casingNbt = new NBTTagCompound();
+        casing.writeToNBTForClient(casingNbt);
+        nbt.setTag(TAG_CASING, casingNbt);
+    }
+
+    @Override
+    protected void writeToNBTForServer(final NBTTagCompound nbt) {
+        super.writeToNBTForServer(nbt);
+
+        final NBTTagCompound casingNbt = new NBTTagCompound();
+        casing.writeToNBT(casingNbt);
+        nbt.setTag(TAG_CASING, casingNbt);
+    }
+
+    @Override
+    protected void writeToNBTForChunkData(final NBTTagCompound nbt) {
+        // Only what's needed to render the casing itself, i.e. which modules
+        // are installed and whether it's locked or enabled. Module state is
+        // sent in bulk separately, see ChunkWatchHandlerCasingState.
+        nbt.setBoolean(TAG_ENABLED, isEnabled);
+        nbt.setByteArray(TAG_LOCKED, compressClosed(locked));
+
+        final NBTTagCompound inventoryNbt = new NBTTagCompound();
+        inventory.writeToNBT(inventoryNbt);
+        nbt.setTag(TAG_INVENTORY, inventoryNbt);
+
+        final NBTTagCompound casingNbt = new NBTTagCompound();
+        casing.writeLockToNBT(casingNbt);
+        nbt.setTag(TAG_CASING, casingNbt);
     }
 
     @Override
@@ -367,12 +443,18 @@ public final class TileEntityCasing extends TileEntityComputer implements
         super.readFromNBTCommon(nbt);
 
         decompressClosed(nbt.getByteArray(TAG_LOCKED), locked);
+        for (final Face face : Face.VALUES) {
+            relinkForwarder(face);
+        }
 
         final NBTTagCompound inventoryNbt = nbt.getCompoundTag(TAG_INVENTORY);
         inventory.readFromNBT(inventoryNbt);
 
         final NBTTagCompound casingNbt = nbt.getCompoundTag(TAG_CASING);
         casing.readFromNBT(casingNbt);
+        if (getController() != null) {
+            getController().onModulesChanged();
+        }
     }
 
     @Override
@@ -386,12 +468,6 @@ public final class TileEntityCasing extends TileEntityComputer implements
         final NBTTagCompound inventoryNbt = new NBTTagCompound();
         inventory.writeToNBT(inventoryNbt);
         nbt.setTag(TAG_INVENTORY, inventoryNbt);
-
-        // Needed on the client also, to allow initializing client side modules
-        // immediately after creation.
-        final NBTTagCompound casingNbt = new NBTTagCompound();
-        casing.writeToNBT(casingNbt);
-        nbt.setTag(TAG_CASING, casingNbt);
     }
 
     // --------------------------------------------------------------------- //
@@ -426,6 +502,27 @@ public final class TileEntityCasing extends TileEntityComputer implements
         }
     }
 
+    /**
+     * Write the full state of the casing's modules, used for sending module
+     * state in bulk to clients that started watching the casing's chunk.
+     *
+     * @param nbt the tag to write the data to.
+     */
+    public void writeCasingStateToNBT(final NBTTagCompound nbt) {
+        casing.writeToNBTForClient(nbt);
+    }
+
+    /**
+     * Used for synchronizing state between server and client, applying the
+     * full state of the modules of this casing sent in bulk by the server.
+     *
+     * @param nbt the state written via {@link #writeCasingStateToNBT(NBTTagCompound)}.
+     */
+    @SideOnly(Side.CLIENT)
+    public void setCasingStateClient(final NBTTagCompound nbt) {
+        casing.readFromNBT(nbt);
+    }
+
     /**
      * Used for synchronizing state between server and client, letting the
      * client know of the new enabled state of this casing, for rendering.
@@ -506,7 +603,13 @@ public final class TileEntityCasing extends TileEntityComputer implements
 
     private void dispose() {
         if (getController() != null) {
-            getController().scheduleScan();
+            if (isInvalid()) {
+                // Removed from the world, let the controller detach us.
+                getController().onCasingRemoved(this);
+            } else {
+                // Unloaded, multi-block becomes incomplete.
+                getController().scheduleScan();
+            }
         }
         casing.onDisposed();
     }
@@ -1,5 +1,7 @@
 package li.cil.tis3d.common.tileentity;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
@@ -16,6 +18,7 @@ import net.minecraft.world.World;
 import net.minecraftforge.common.util.Constants;
 
 import javax.annotation.Nullable;
+import java.util.List;
 
 public abstract class TileEntityComputer extends TileEntity implements PipeHost {
     // --------------------------------------------------------------------- //
@@ -58,7 +61,18 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
     }
 
     // NBT tag names.
-    private static final String TAG_PIPES = "pipes";
+    private static final String TAG_PIPES = "pipes"; // Legacy, list of compounds.
+    private static final String TAG_PIPES_PACKED = "pipesPacked";
+
+    /**
+     * Version of the packed pipe data layout, stored as the first byte.
+     */
+    private static final byte PIPES_FORMAT_VERSION = 1;
+
+    /**
+     * Number of bytes a single pipe takes in the packed pipe data.
+     */
+    private static final int PACKED_PIPE_SIZE = 3;
 
     protected final TileEntityComputer[] neighbors = new TileEntityComputer[Face.VALUES.length];
     protected final Forwarder[] forwarders = new Forwarder[Face.VALUES.length];
@@ -68,7 +82,7 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
     protected TileEntityComputer() {
         for (final Face face : Face.VALUES) {
             for (final Port port : Port.VALUES) {
-                pipes[pack(face, port)] = new PipeImpl(this, face, mapFace(face, port), mapSide(face, port));
+                pipes[pack(face, port)] = new PipeImpl(this, face, port, mapFace(face, port), mapSide(face, port));
             }
         }
     }
@@ -97,6 +111,106 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
         }
     }
 
+    /**
+     * Get the pipe the forwarder on the specified face reads from for the
+     * specified port, i.e. the source of the edge defined by face and port.
+     *
+     * @param face the face of the forwarder.
+     * @param port the port of the edge.
+     * @return the pipe data is read from, or <tt>null</tt> if there is no forwarder on the face or the port is locked.
+     */
+    @Nullable
+    PipeImpl getForwarderReceivingPipe(final Face face, final Port port) {
+        final Forwarder forwarder = forwarders[face.ordinal()];
+        return forwarder != null ? forwarder.receivingPipes[port.ordinal()] : null;
+    }
+
+    /**
+     * Get the pipe the forwarder on the specified face writes to for the
+     * specified port, i.e. the sink of the edge defined by face and port.
+     *
+     * @param face the face of the forwarder.
+     * @param port the port of the edge.
+     * @return the pipe data is written to, or <tt>null</tt> if there is no forwarder on the face.
+     */
+    @Nullable
+    PipeImpl getForwarderSendingPipe(final Face face, final Port port) {
+        final Forwarder forwarder = forwarders[face.ordinal()];
+        return forwarder != null ? forwarder.sendingPipes[port.ordinal()] : null;
+    }
+
+    /**
+     * Get whether the <em>receiving</em> pipe on the specified face and port
+     * is locked, in which case no data is forwarded from it.
+     *
+     * @param face the face to get the locked state for.
+     * @param port the port of the receiving pipe to get the locked state for.
+     * @return <code>true</code> if the port is locked; <code>false</code> otherwise.
+     */
+    public boolean isReceivingPipeLocked(final Face face, final Port port) {
+        return false;
+    }
+
+    /**
+     * Re-resolve the pipes the forwarder on the specified face reads from,
+     * to be called when the locked state of a port on that face changed.
+     *
+     * @param face the face of the forwarder to update.
+     */
+    protected void relinkForwarder(final Face face) {
+        final Forwarder forwarder = forwarders[face.ordinal()];
+        if (forwarder != null) {
+            forwarder.setSink(forwarder.other);
+        }
+    }
+
+    /**
+     * Forward data over an edge between two computer parts, reading from the
+     * pipe on one side while there's a reader on the pipe on the other side.
+     *
+     * @param receivingPipe the pipe to read data from.
+     * @param sendingPipe   the pipe to write data to.
+     */
+    static void forward(final PipeImpl receivingPipe, final PipeImpl sendingPipe) {
+        if (sendingPipe.isReading() && !sendingPipe.isWriting()) {
+            if (!receivingPipe.isReading()) {
+                receivingPipe.beginRead();
+            }
+            if (receivingPipe.canTransfer()) {
+                sendingPipe.beginWrite(receivingPipe.read());
+            }
+        } else if (receivingPipe.isReading()) {
+            receivingPipe.cancelRead();
+        }
+    }
+
+    /**
+     * Whether forwarding over an edge would do nothing, which is the case
+     * while nobody is reading on the other side and it is not reading itself.
+     *
+     * @param receivingPipe the pipe data is read from.
+     * @param sendingPipe   the pipe data is written to.
+     * @return <tt>true</tt> if the edge is idle; <tt>false</tt> otherwise.
+     */
+    static boolean isIdle(final PipeImpl receivingPipe, final PipeImpl sendingPipe) {
+        return !receivingPipe.isReading() && !sendingPipe.isReading();
+    }
+
+    /**
+     * Collect all pipes of this computer part that need to be advanced,
+     * scheduling them, and unscheduling all others.
+     *
+     * @param into the list to add the pipes needing to be advanced to.
+     */
+    void collectActivePipes(final List<PipeImpl> into) {
+        for (final PipeImpl pipe : pipes) {
+            pipe.unschedule();
+            if (pipe.needsStep() && pipe.schedule()) {
+                into.add(pipe);
+            }
+        }
+    }
+
     /**
      * Get the list of all pipes managed by this computer part.
      *
@@ -151,6 +265,26 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
         }
     }
 
+    @Override
+    public void onBeginRead(final PipeImpl pipe) {
+        onPipeActivated(pipe);
+
+        // The edge reading from this pipe and the one writing to it may have
+        // data to forward now.
+        if (forwarders[pipe.getReceivingFace().ordinal()] != null) {
+            onEdgeActivated(pipe.getReceivingFace(), pipe.getReceivingPort());
+        }
+        final Forwarder writer = forwarders[pipe.getSendingFace().ordinal()];
+        if (writer != null) {
+            writer.other.computer.onEdgeActivated(writer.other.face, Forwarder.flipSide(pipe.getSendingPort()));
+        }
+    }
+
+    @Override
+    public void onBeginWrite(final PipeImpl pipe) {
+        onPipeActivated(pipe);
+    }
+
     // --------------------------------------------------------------------- //
     // TileEntity
 
@@ -189,7 +323,7 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
     @Override
     public NBTTagCompound getUpdateTag() {
         final NBTTagCompound nbt = super.getUpdateTag();
-        writeToNBTForClient(nbt);
+        writeToNBTForChunkData(nbt);
         return nbt;
     }
 
@@ -215,14 +349,40 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
         }
     }
 
-    protected abstract void scheduleScan();
+    /**
+     * Called when the neighbor on one of the sides of this computer part
+     * changed, to allow updating the multi-block this part belongs to.
+     *
+     * @param oldNeighbor the previous neighbor, if any.
+     * @param neighbor    the new neighbor, if any.
+     */
+    protected abstract void onNeighborChanged(@Nullable final TileEntityComputer oldNeighbor, @Nullable final TileEntityComputer neighbor);
+
+    /**
+     * Called when one of the pipes of this computer part needs to be advanced.
+     *
+     * @param pipe the pipe that needs to be advanced.
+     */
+    protected void onPipeActivated(final PipeImpl pipe) {
+    }
+
+    /**
+     * Called when the edge defined by the specified face and port, leading
+     * from this computer part to its neighbor, may have data to forward,
+     * and needs to be advanced.
+     *
+     * @param face the face of the edge that needs to be advanced.
+     * @param port the port of the edge that needs to be advanced.
+     */
+    protected void onEdgeActivated(final Face face, final Port port) {
+    }
 
     protected void setNeighbor(final Face face, @Nullable final TileEntityComputer neighbor) {
-        // If a neighbor changed, do a rescan in the controller.
+        // If a neighbor changed, let the controller update the multi-block.
         final TileEntityComputer oldNeighbor = neighbors[face.ordinal()];
         if (neighbor != oldNeighbor) {
             neighbors[face.ordinal()] = neighbor;
-            scheduleScan();
+            onNeighborChanged(oldNeighbor, neighbor);
         }
 
         // Adjust forwarders, connecting multiple casings.
@@ -243,23 +403,33 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
     }
 
     protected void readFromNBTForServer(final NBTTagCompound nbt) {
-        final NBTTagList pipesNbt = nbt.getTagList(TAG_PIPES, Constants.NBT.TAG_COMPOUND);
-        final int pipeCount = Math.min(pipesNbt.tagCount(), pipes.length);
-        for (int i = 0; i < pipeCount; i++) {
-            pipes[i].readFromNBT(pipesNbt.getCompoundTagAt(i));
+        if (nbt.hasKey(TAG_PIPES_PACKED, Constants.NBT.TAG_BYTE_ARRAY)) {
+            final ByteBuf pipesData = Unpooled.wrappedBuffer(nbt.getByteArray(TAG_PIPES_PACKED));
+            if (pipesData.isReadable() && pipesData.readByte() == PIPES_FORMAT_VERSION) {
+                final int pipeCount = Math.min(pipesData.readableBytes() / PACKED_PIPE_SIZE, pipes.length);
+                for (int i = 0; i < pipeCount; i++) {
+                    pipes[i].readFromBytes(pipesData);
+                }
+            }
+        } else {
+            // Old save, migrate from list of compounds.
+            final NBTTagList pipesNbt = nbt.getTagList(TAG_PIPES, Constants.NBT.TAG_COMPOUND);
+            final int pipeCount = Math.min(pipesNbt.tagCount(), pipes.length);
+            for (int i = 0; i < pipeCount; i++) {
+                pipes[i].readFromNBT(pipesNbt.getCompoundTagAt(i));
+            }
         }
 
         readFromNBTCommon(nbt);
     }
 
     protected void writeToNBTForServer(final NBTTagCompound nbt) {
-        final NBTTagList pipesNbt = new NBTTagList();
+        final ByteBuf pipesData = Unpooled.buffer(1 + pipes.length * PACKED_PIPE_SIZE);
+        pipesData.writeByte(PIPES_FORMAT_VERSION);
         for (final PipeImpl pipe : pipes) {
-            final NBTTagCompound portNbt = new NBTTagCompound();
-            pipe.writeToNBT(portNbt);
-            pipesNbt.appendTag(portNbt);
+            pipe.writeToBytes(pipesData);
         }
-        nbt.setTag(TAG_PIPES, pipesNbt);
+        nbt.setByteArray(TAG_PIPES_PACKED, pipesData.array());
 
         writeToNBTCommon(nbt);
     }
@@ -272,6 +442,16 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
         writeToNBTCommon(nbt);
     }
 
+    /**
+     * Write the data sent along with the chunk data when a client starts
+     * watching the chunk this computer part is in. Read via {@link #readFromNBTForClient(NBTTagCompound)}.
+     *
+     * @param nbt the tag to write the data to.
+     */
+    protected void writeToNBTForChunkData(final NBTTagCompound nbt) {
+        writeToNBTForClient(nbt);
+    }
+
     protected void readFromNBTCommon(final NBTTagCompound nbt) {
     }
 
@@ -345,6 +525,13 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
         private final Face face;
         private Forwarder other;
 
+        /**
+         * The pipes to read from and write to, per port, resolved once when
+         * linked to the sink, so forwarding needs no further lookups.
+         */
+        private final PipeImpl[] receivingPipes = new PipeImpl[Port.VALUES.length];
+        private final PipeImpl[] sendingPipes = new PipeImpl[Port.VALUES.length];
+
         private Forwarder(final TileEntityComputer computer, final Face face) {
             this.computer = computer;
             this.face = face;
@@ -352,35 +539,29 @@ public abstract class TileEntityComputer extends TileEntity implements PipeHost
 
         public void setSink(final Forwarder other) {
             this.other = other;
+            for (final Port port : Port.VALUES) {
+                // Locked ports never pass on any data, so leave them unlinked.
+                receivingPipes[port.ordinal()] = computer.isReceivingPipeLocked(face, port) ? null : computer.pipes[pack(face, port)];
+                sendingPipes[port.ordinal()] = other.computer.pipes[packMapped(other.face, flipSide(port))];
+            }
         }
 
         public void step() {
-            for (final Port port : Port.VALUES) {
-                beginForwarding(port);
+            for (int port = 0; port < receivingPipes.length; port++) {
+                if (receivingPipes[port] != null) {
+                    forward(receivingPipes[port], sendingPipes[port]);
+                }
             }
         }
 
         public void onWriteComplete(final Port port) {
-            beginForwarding(port);
+            if (receivingPipes[port.ordinal()] != null) {
+                forward(receivingPipes[port.ordinal()], sendingPipes[port.ordinal()]);
+            }
         }
 
         // --------------------------------------------------------------------- //
 
-        private void beginForwarding(final Port port) {
-            final Pipe receivingPipe = computer.getReceivingPipe(face, port);
-            final Pipe sendingPipe = other.computer.getSendingPipe(other.face, flipSide(port));
-            if (sendingPipe.isReading() && !sendingPipe.isWriting()) {
-                if (!receivingPipe.isReading()) {
-                    receivingPipe.beginRead();
-                }
-                if (receivingPipe.canTransfer()) {
-                    sendingPipe.beginWrite(receivingPipe.read());
-                }
-            } else if (receivingPipe.isReading()) {
-                receivingPipe.cancelRead();
-            }
-        }
-
         private static Port flipSide(final Port port) {
             return (port == Port.LEFT || port == Port.RIGHT) ? port.getOpposite() : port;
         }
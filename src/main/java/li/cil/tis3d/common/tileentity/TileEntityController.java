@@ -1,8 +1,13 @@
 package li.cil.tis3d.common.tileentity;
 
 import li.cil.tis3d.api.API;
+import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.event.TickHandlerController;
+import li.cil.tis3d.common.machine.PipeImpl;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.MessageHaltAndCatchFire;
 import net.minecraft.block.state.IBlockState;
@@ -11,17 +16,22 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.EnumParticleTypes;
-import net.minecraft.util.ITickable;
 import net.minecraft.util.SoundCategory;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 
+import javax.annotation.Nullable;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Queue;
@@ -31,13 +41,17 @@ import java.util.Set;
  * The controller tile entity.
  * <p>
  * Scans for multi-block structures if scheduled by either the controller
- * itself or by a connected casing. Manages a list of casings and updates
- * the modules in the casing (this is the only ticking part of a multi-block).
+ * itself or by a connected casing, and keeps the multi-block up-to-date
+ * incrementally when casings are added or removed afterwards. Manages a
+ * list of casings and updates the modules in the casing (this is the only
+ * ticking part of a multi-block). Controllers are not ticked by the world,
+ * but by the {@link TickHandlerController}, and only while they have
+ * something to do.
  * <p>
  * Controllers have no real state. They are active when powered by a redstone
  * signal, and can be reset by right-clicking them.
  */
-public final class TileEntityController extends TileEntityComputer implements ITickable {
+public final class TileEntityController extends TileEntityComputer {
     // --------------------------------------------------------------------- //
     // Computed data
 
@@ -46,6 +60,16 @@ public final class TileEntityController extends TileEntityComputer implements IT
      */
     private static final int COOLDOWN_HCF = 60;
 
+    /**
+     * The accumulated redstone power when receiving a full signal from all sides.
+     */
+    private static final int MAX_POWER = EnumFacing.VALUES.length * 15;
+
+    /**
+     * The maximum throttle level, see {@link #setThrottle(int)}.
+     */
+    public static final int MAX_THROTTLE = 6;
+
     /**
      * Possible states of a controller.
      */
@@ -112,6 +136,77 @@ public final class TileEntityController extends TileEntityComputer implements IT
      */
     private final List<TileEntityCasing> casings = new ArrayList<>(Settings.maxCasingsPerController);
 
+    /**
+     * The set of casings managed by this controller, for quick membership tests.
+     */
+    private final Set<TileEntityCasing> casingSet = new HashSet<>();
+
+    /**
+     * Casings placed next to the multi-block since the last update, which
+     * will be attached to the multi-block in the next update.
+     */
+    private final Set<TileEntityCasing> pendingAdded = new LinkedHashSet<>();
+
+    /**
+     * Casings of the multi-block removed since the last update, which will
+     * be detached from the multi-block in the next update.
+     */
+    private final Set<TileEntityCasing> pendingRemoved = new LinkedHashSet<>();
+
+    /**
+     * The modules installed in our casings, in order of execution. Rebuilt
+     * when modules are installed or removed, so that empty slots and slots
+     * covered by forwarders cost nothing when stepping.
+     */
+    private Module[] modules = new Module[0];
+
+    /**
+     * Whether modules were installed or removed since we last rebuilt {@link #modules}.
+     */
+    private boolean modulesChanged;
+
+    /**
+     * The pipes of our casings that need to be advanced in the next step.
+     * Pipes are added to this when an operation is started on them, and
+     * removed again when they reached a state where stepping does nothing.
+     */
+    private final List<PipeImpl> activePipes = new ArrayList<>();
+
+    /**
+     * The number of edges per casing, one per face and port.
+     */
+    private static final int EDGES_PER_CASING = Face.VALUES.length * Port.VALUES.length;
+
+    /**
+     * The order of execution of our casings. Deterministic, which is important
+     * when modules write / read from multiple ports but only want to make the
+     * data available to the first (e.g. execution module's ANY target).
+     */
+    private static final Comparator<TileEntityCasing> CASING_ORDER = Comparator.comparing(TileEntityCasing::getPosition);
+
+    /**
+     * The edges between our casings and their neighbors data gets forwarded
+     * over, as pairs of pipes to read from and write to. Indexed by casing index
+     * times {@link #EDGES_PER_CASING} plus face times port count plus port,
+     * which is the order edges were advanced in when stepping forwarders one
+     * by one. Entries are <tt>null</tt> for faces with no neighbor.
+     */
+    private PipeImpl[] edgeReceivingPipes = new PipeImpl[0];
+    private PipeImpl[] edgeSendingPipes = new PipeImpl[0];
+
+    /**
+     * The edges that need to be advanced in the next step. Edges are set in
+     * this when a read is started on one of their pipes, and cleared when there
+     * is nothing left to forward. Iterated in index order to keep the order of
+     * execution deterministic.
+     */
+    private final BitSet activeEdges = new BitSet();
+
+    /**
+     * Positions of the casings we registered ourselves for in the {@link ControllerIndex}.
+     */
+    private final Set<BlockPos> indexedPositions = new HashSet<>();
+
     /**
      * The current state of the controller.
      */
@@ -122,9 +217,29 @@ public final class TileEntityController extends TileEntityComputer implements IT
      */
     private ControllerState lastSentState = ControllerState.SCANNING;
 
+    /**
+     * How much the controller is slowed down to keep the server within its
+     * time budget, see {@link #setThrottle(int)}.
+     */
+    private int throttle;
+
+    /**
+     * The last throttle level we sent to clients.
+     */
+    private int lastSentThrottle;
+
+    /**
+     * Whether we're currently in {@link #update()} on the server, meaning we
+     * will flush dirty casings before returning.
+     */
+    private boolean isUpdating;
+
     // NBT tag names.
     private static final String TAG_HCF_COOLDOWN = "hcfCooldown";
     private static final String TAG_STATE = "state";
+    private static final String TAG_THROTTLE = "throttle";
+    private static final String TAG_TOPOLOGY = "topology";
+    private static final String TAG_TOPOLOGY_CHECKSUM = "topologyChecksum";
 
     /**
      * User scheduled a forced step for the next tick.
@@ -135,6 +250,22 @@ public final class TileEntityController extends TileEntityComputer implements IT
      */
     private boolean forceStep;
 
+    /**
+     * Set when the chunk we're in was unloaded, to stop being updated.
+     */
+    private boolean isChunkUnloaded;
+
+    /**
+     * The accumulated redstone power applied to the controller, see {@link #computePower()}.
+     * Only recomputed when a neighboring block changed, see {@link #markRedstoneDirty()}.
+     */
+    private int power;
+
+    /**
+     * Whether the redstone power applied to the controller may have changed.
+     */
+    private boolean powerDirty = true;
+
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -143,6 +274,14 @@ public final class TileEntityController extends TileEntityComputer implements IT
      */
     private int hcfCooldown = 0;
 
+    /**
+     * Positions of the casings of the multi-block when it was saved, relative
+     * to the controller, as x, y, z triples. Used to restore the multi-block
+     * without a full scan after loading, if the world still matches it.
+     */
+    @Nullable
+    private int[] savedTopology;
+
     // --------------------------------------------------------------------- //
 
     /**
@@ -154,6 +293,41 @@ public final class TileEntityController extends TileEntityComputer implements IT
         return state;
     }
 
+    /**
+     * Get the current throttle level of the controller.
+     *
+     * @return the current throttle level.
+     * @see #setThrottle(int)
+     */
+    public int getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Set the throttle level of the controller. Each level halves the speed
+     * the multi-block is stepped at, zero means the controller is running at
+     * the speed given by its redstone power.
+     * <p>
+     * Set by the {@link TickHandlerController} to keep the time spent updating
+     * controllers within the configured budget. Not persisted, controllers
+     * start at full speed after loading.
+     *
+     * @param value the new throttle level, clamped to [0, {@link #MAX_THROTTLE}].
+     */
+    public void setThrottle(final int value) {
+        throttle = Math.max(0, Math.min(MAX_THROTTLE, value));
+    }
+
+    /**
+     * Whether the controller is currently updating on the server, and will
+     * flush casings marked dirty before the update completes.
+     *
+     * @return <tt>true</tt> if the controller is updating; <tt>false</tt> otherwise.
+     */
+    public boolean isUpdating() {
+        return isUpdating;
+    }
+
     /**
      * Schedule a rescan for connected casings.
      * <p>
@@ -161,6 +335,151 @@ public final class TileEntityController extends TileEntityComputer implements IT
      */
     public void scheduleScan() {
         state = ControllerState.SCANNING;
+        wake();
+    }
+
+    /**
+     * Whether the controller has to be updated in the next tick.
+     * <p>
+     * Controllers in an error state, for example, have nothing to do until
+     * something changes, at which point they will {@link #wake()} up again.
+     *
+     * @return <tt>true</tt> if the controller needs updating; <tt>false</tt> otherwise.
+     */
+    public boolean needsUpdate() {
+        if (isInvalid() || isChunkUnloaded) {
+            return false;
+        }
+        if (hcfCooldown > 0) {
+            return true;
+        }
+        if (getWorld().isRemote) {
+            return false;
+        }
+        if (state != lastSentState || throttle != lastSentThrottle || state == ControllerState.SCANNING) {
+            return true;
+        }
+        if (state == ControllerState.RUNNING) {
+            return true;
+        }
+        if (state == ControllerState.READY) {
+            // Unpowered controllers sleep until the power changes, unless
+            // there are pending changes to the multi-block to apply.
+            return power > 0 || powerDirty || !pendingAdded.isEmpty() || !pendingRemoved.isEmpty();
+        }
+        return false;
+    }
+
+    /**
+     * Used to notify the controller that the redstone power applied to it may
+     * have changed, causing it to recompute it in its next update.
+     */
+    public void markRedstoneDirty() {
+        powerDirty = true;
+        wake();
+    }
+
+    /**
+     * Called when a casing was placed next to a part of this controller's
+     * multi-block. The casing and all casings connected to it will be
+     * attached to the multi-block in the next update.
+     * <p>
+     * If the controller is not operational this schedules a full scan instead.
+     *
+     * @param casing the casing that was added.
+     */
+    public void onCasingAdded(final TileEntityCasing casing) {
+        if (casingSet.contains(casing)) {
+            return;
+        }
+        if (isOperational()) {
+            pendingAdded.add(casing);
+            wake();
+        } else {
+            scheduleScan();
+        }
+    }
+
+    /**
+     * Called when a casing of this controller's multi-block was removed from
+     * the world. The casing will be detached from the multi-block in the next
+     * update, releasing any casings that are no longer connected to the
+     * controller without it.
+     * <p>
+     * If the controller is not operational this schedules a full scan instead.
+     *
+     * @param casing the casing that was removed.
+     */
+    public void onCasingRemoved(final TileEntityCasing casing) {
+        if (!casingSet.contains(casing)) {
+            return;
+        }
+        if (isOperational()) {
+            pendingRemoved.add(casing);
+            wake();
+        } else {
+            scheduleScan();
+        }
+    }
+
+    /**
+     * Called by casings when modules were installed in or removed from them.
+     */
+    public void onModulesChanged() {
+        modulesChanged = true;
+    }
+
+    /**
+     * Called by casings when an operation was started on one of their pipes,
+     * which will then be advanced each step until it becomes idle again.
+     *
+     * @param pipe the pipe that needs to be advanced.
+     */
+    void schedulePipe(final PipeImpl pipe) {
+        if (pipe.schedule()) {
+            activePipes.add(pipe);
+        }
+    }
+
+    /**
+     * Called by casings when an edge to one of their neighbors may have data
+     * to forward, which will then be advanced each step until it becomes idle again.
+     *
+     * @param casing the casing the edge starts at.
+     * @param face   the face of the edge.
+     * @param port   the port of the edge.
+     */
+    void scheduleEdge(final TileEntityCasing casing, final Face face, final Port port) {
+        final int index = casing.partIndex;
+        if (index >= 0 && index < casings.size() && casings.get(index) == casing) {
+            activeEdges.set(index * EDGES_PER_CASING + face.ordinal() * Port.VALUES.length + port.ordinal());
+        }
+    }
+
+    /**
+     * Called by casings when the pipes of an edge to one of their neighbors
+     * changed, e.g. because a port was locked or unlocked.
+     *
+     * @param casing the casing the edge starts at.
+     * @param face   the face of the edge.
+     * @param port   the port of the edge.
+     */
+    void onEdgeChanged(final TileEntityCasing casing, final Face face, final Port port) {
+        final int index = casing.partIndex;
+        if (index >= 0 && index < casings.size() && casings.get(index) == casing) {
+            final int edge = index * EDGES_PER_CASING + face.ordinal() * Port.VALUES.length + port.ordinal();
+            final PipeImpl receivingPipe = casing.getForwarderReceivingPipe(face, port);
+            final PipeImpl sendingPipe = casing.getForwarderSendingPipe(face, port);
+            if (receivingPipe != null && sendingPipe != null) {
+                edgeReceivingPipes[edge] = receivingPipe;
+                edgeSendingPipes[edge] = sendingPipe;
+                activeEdges.set(edge);
+            } else {
+                edgeReceivingPipes[edge] = null;
+                edgeSendingPipes[edge] = null;
+                activeEdges.clear(edge);
+            }
+        }
     }
 
     /**
@@ -187,6 +506,7 @@ public final class TileEntityController extends TileEntityComputer implements IT
             Network.INSTANCE.getWrapper().sendToAllAround(message, target);
         }
         hcfCooldown = COOLDOWN_HCF;
+        wake();
     }
 
     // --------------------------------------------------------------------- //
@@ -211,26 +531,56 @@ public final class TileEntityController extends TileEntityComputer implements IT
             casing.setController(null);
         }
         casings.clear();
+        casingSet.clear();
+        pendingAdded.clear();
+        pendingRemoved.clear();
+        rebuildStepOrder();
+        clearIndex();
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+
+        if (!getWorld().isRemote) {
+            wake();
+        }
     }
 
     @Override
     public void onChunkUnload() {
         super.onChunkUnload();
 
+        isChunkUnloaded = true;
+
         // Just unset from our casings, do *not* disable them to keep their state.
         for (final TileEntityCasing casing : casings) {
             casing.setController(null);
         }
+        clearIndex();
     }
 
     // --------------------------------------------------------------------- //
     // TileEntityComputer
 
+    @Override
+    protected void onNeighborChanged(@Nullable final TileEntityComputer oldNeighbor, @Nullable final TileEntityComputer neighbor) {
+        onPartNeighborChanged(oldNeighbor, neighbor);
+    }
+
     @Override
     protected void readFromNBTForServer(final NBTTagCompound nbt) {
         super.readFromNBTForServer(nbt);
 
         hcfCooldown = nbt.getInteger(TAG_HCF_COOLDOWN);
+
+        savedTopology = null;
+        if (nbt.hasKey(TAG_TOPOLOGY, Constants.NBT.TAG_INT_ARRAY)) {
+            final int[] topology = nbt.getIntArray(TAG_TOPOLOGY);
+            if (topology.length % 3 == 0 && Arrays.hashCode(topology) == nbt.getInteger(TAG_TOPOLOGY_CHECKSUM)) {
+                savedTopology = topology;
+            }
+        }
     }
 
     @Override
@@ -238,6 +588,18 @@ public final class TileEntityController extends TileEntityComputer implements IT
         super.writeToNBTForServer(nbt);
 
         nbt.setInteger(TAG_HCF_COOLDOWN, hcfCooldown);
+
+        if (isOperational()) {
+            final int[] topology = new int[casings.size() * 3];
+            for (int i = 0; i < casings.size(); i++) {
+                final BlockPos position = casings.get(i).getPos();
+                topology[i * 3] = position.getX() - pos.getX();
+                topology[i * 3 + 1] = position.getY() - pos.getY();
+                topology[i * 3 + 2] = position.getZ() - pos.getZ();
+            }
+            nbt.setIntArray(TAG_TOPOLOGY, topology);
+            nbt.setInteger(TAG_TOPOLOGY_CHECKSUM, Arrays.hashCode(topology));
+        }
     }
 
     @Override
@@ -245,6 +607,7 @@ public final class TileEntityController extends TileEntityComputer implements IT
         super.readFromNBTForClient(nbt);
 
         state = ControllerState.VALUES[nbt.getByte(TAG_STATE) & 0xFF];
+        throttle = nbt.getByte(TAG_THROTTLE);
     }
 
     @Override
@@ -252,12 +615,15 @@ public final class TileEntityController extends TileEntityComputer implements IT
         super.writeToNBTForClient(nbt);
 
         nbt.setByte(TAG_STATE, (byte) state.ordinal());
+        nbt.setByte(TAG_THROTTLE, (byte) throttle);
     }
 
     // --------------------------------------------------------------------- //
-    // ITickable
 
-    @Override
+    /**
+     * Update the controller, called each tick by the {@link TickHandlerController}
+     * while the controller {@link #needsUpdate()}.
+     */
     public void update() {
         final World world = getWorld();
 
@@ -286,11 +652,34 @@ public final class TileEntityController extends TileEntityComputer implements IT
             return;
         }
 
-        if (state != lastSentState) {
+        // Don't leave casings deferring their dirty flags to us forever if a
+        // module throws while being updated.
+        isUpdating = true;
+        try {
+            updateServer(world);
+        } finally {
+            isUpdating = false;
+        }
+
+        // Apply changes modules flagged during this update, once per tick.
+        casings.forEach(TileEntityCasing::flushDirty);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Server side update logic, advancing the state of the controller and
+     * stepping the multi-block if powered.
+     *
+     * @param world the world the controller lives in.
+     */
+    private void updateServer(final World world) {
+        if (state != lastSentState || throttle != lastSentThrottle) {
             final Chunk chunk = world.getChunkFromBlockCoords(pos);
             final IBlockState blockState = world.getBlockState(getPos());
             world.markAndNotifyBlock(getPos(), chunk, blockState, blockState, 7);
             lastSentState = state;
+            lastSentThrottle = throttle;
         }
 
         // Enforce cooldown after HCF event.
@@ -299,9 +688,36 @@ public final class TileEntityController extends TileEntityComputer implements IT
             return;
         }
 
-        // Check if we need to rescan our multi-block structure.
+        // Check if we need to rescan our multi-block structure, or apply
+        // changes to it since the last update.
         if (state == ControllerState.SCANNING) {
-            scan();
+            // After loading, try to restore the saved multi-block first.
+            final int[] topology = savedTopology;
+            savedTopology = null;
+            if (topology == null || !restore(topology)) {
+                scan();
+            }
+        } else if (isOperational()) {
+            // Apply all pending changes first, so the order of execution only
+            // gets rebuilt once per batch of changes.
+            boolean partsChanged = false;
+            if (!pendingRemoved.isEmpty()) {
+                detach();
+                partsChanged = true;
+            }
+            List<TileEntityCasing> attached = Collections.emptyList();
+            if (!pendingAdded.isEmpty()) {
+                attached = attach();
+                partsChanged |= !attached.isEmpty();
+            }
+            if (partsChanged) {
+                rebuildStepOrder();
+            }
+
+            // If we're already running, start up the new modules right away.
+            if (state == ControllerState.RUNNING) {
+                attached.forEach(TileEntityCasing::onEnabled);
+            }
         }
 
         // Stop if we're in an invalid state.
@@ -309,8 +725,11 @@ public final class TileEntityController extends TileEntityComputer implements IT
             return;
         }
 
-        // Get accumulated redstone power coming in.
-        final int power = computePower();
+        // Get accumulated redstone power coming in, if it may have changed.
+        if (powerDirty) {
+            powerDirty = false;
+            power = computePower();
+        }
 
         // If we're in an error state we do nothing.
         if (state == ControllerState.READY) {
@@ -330,7 +749,7 @@ public final class TileEntityController extends TileEntityComputer implements IT
             forceStep = forceStep && power == 1;
 
             // Are we powered?
-            if (!world.isBlockPowered(getPos())) {
+            if (power < 1) {
                 // Nope, fall back to ready state, disable modules.
                 state = ControllerState.READY;
                 casings.forEach(TileEntityCasing::onDisabled);
@@ -343,19 +762,29 @@ public final class TileEntityController extends TileEntityComputer implements IT
                     // 1 = paused, i.e. we don't lose state, but don't step.
                     // [2-14] = step every 15-n-th step.
                     // 15 = step every tick.
-                    // [16-75] = step n/15 times a tick.
-                    // 75 = step 5 times a tick.
+                    // [16-89] = step n/15 times a tick.
+                    // 90 = step 6 times a tick, or as configured if overclocked.
+                    // Each throttle level halves the resulting speed.
                     if (power < 15) {
                         // Stepping slower than 100%.
-                        final int delay = 15 - power;
+                        final int delay = (15 - power) << throttle;
                         if (world.getTotalWorldTime() % delay == 0 || forceStep) {
                             step();
                         }
                     } else {
                         // Stepping faster than 100%.
-                        final int steps = power / 15;
-                        for (int step = 0; step < steps; step++) {
-                            step();
+                        final int stepsPerTick = getStepsPerTick();
+                        final int steps = stepsPerTick >> throttle;
+                        if (steps > 0) {
+                            for (int step = 0; step < steps; step++) {
+                                step();
+                            }
+                        } else {
+                            // Throttled below one step per tick.
+                            final int delay = ((1 << throttle) + stepsPerTick - 1) / stepsPerTick;
+                            if (world.getTotalWorldTime() % delay == 0) {
+                                step();
+                            }
                         }
                     }
                 } catch (final HaltAndCatchFireException e) {
@@ -368,7 +797,58 @@ public final class TileEntityController extends TileEntityComputer implements IT
         }
     }
 
-    // --------------------------------------------------------------------- //
+    /**
+     * Called by parts of the multi-block when one of their neighbors changed.
+     *
+     * @param oldNeighbor the previous neighbor of the part, if any.
+     * @param neighbor    the new neighbor of the part, if any.
+     */
+    void onPartNeighborChanged(@Nullable final TileEntityComputer oldNeighbor, @Nullable final TileEntityComputer neighbor) {
+        // When in an error state there's no multi-block to update, so just
+        // check if the error has been resolved.
+        if (!isOperational()) {
+            scheduleScan();
+            return;
+        }
+
+        if (neighbor instanceof TileEntityController) {
+            // Another controller got connected to our multi-block, which is invalid.
+            if (neighbor != this) {
+                scheduleScan();
+            }
+        } else if (neighbor instanceof TileEntityCasing) {
+            onCasingAdded((TileEntityCasing) neighbor);
+        }
+
+        if (oldNeighbor instanceof TileEntityCasing) {
+            final TileEntityCasing casing = (TileEntityCasing) oldNeighbor;
+            if (casing.isInvalid()) {
+                onCasingRemoved(casing);
+            } else if (casingSet.contains(casing)) {
+                // Still around but no longer accessible (unloaded), so our
+                // multi-block is incomplete; let the scan figure it out.
+                scheduleScan();
+            }
+        }
+    }
+
+    /**
+     * Make sure the controller gets updated, if it isn't already.
+     */
+    private void wake() {
+        if (hasWorld()) {
+            TickHandlerController.INSTANCE.schedule(this);
+        }
+    }
+
+    /**
+     * Whether the controller is in a state where it manages a valid multi-block.
+     *
+     * @return <tt>true</tt> if the multi-block is valid; <tt>false</tt> otherwise.
+     */
+    private boolean isOperational() {
+        return state == ControllerState.READY || state == ControllerState.RUNNING;
+    }
 
     /**
      * Checks all six neighbors of the specified tile entity and adds them to the
@@ -443,17 +923,23 @@ public final class TileEntityController extends TileEntityComputer implements IT
                 if (tileEntity == this) {
                     // Special case: first iteration, add the neighbors.
                     if (!addNeighbors(getWorld(), tileEntity, processed, queue)) {
+                        clearIndex();
+                        addToIndex(processed);
                         clear(ControllerState.INCOMPLETE);
                         return;
                     }
                 } else {
                     // We require there to be exactly one controller per multi-block.
+                    clearIndex();
+                    addToIndex(processed);
                     clear(ControllerState.MULTIPLE_CONTROLLERS);
                     return;
                 }
             } else /* if (tileEntity instanceof TileEntityCasing) */ {
                 // We only allow a certain number of casings per multi-block.
                 if (newCasings.size() + 1 > Settings.maxCasingsPerController) {
+                    clearIndex();
+                    addToIndex(processed);
                     clear(ControllerState.TOO_COMPLEX);
                     return;
                 }
@@ -473,6 +959,11 @@ public final class TileEntityController extends TileEntityComputer implements IT
             return;
         }
 
+        // Update the index first, so that casings split off don't tell us
+        // to scan again below.
+        clearIndex();
+        addToIndex(newCasings);
+
         // Handle splits by first getting the set of casings we originally had
         // control over but no longer, setting their controller to null and
         // telling them to reschedule, just in case (onDisable *should* be fine
@@ -486,20 +977,343 @@ public final class TileEntityController extends TileEntityComputer implements IT
         casings.clear();
         casings.addAll(newCasings);
         casings.forEach(c -> c.setController(this));
+        casingSet.clear();
+        casingSet.addAll(newCasings);
+        pendingAdded.clear();
+        pendingRemoved.clear();
 
         // Ensure our parts know their neighbors.
         casings.forEach(TileEntityCasing::checkNeighbors);
         checkNeighbors();
 
-        // Sort casings for deterministic order of execution (important when modules
-        // write / read from multiple ports but only want to make the data available
-        // to the first [e.g. execution module's ANY target]).
-        casings.sort(Comparator.comparing(TileEntityCasing::getPosition));
+        casings.sort(CASING_ORDER);
+        rebuildStepOrder();
 
         // All done. Make sure this comes after the checkNeighbors or we get CMEs!
         state = ControllerState.READY;
     }
 
+    /**
+     * Restore the multi-block from the casing positions saved with the
+     * controller, instead of scanning for it.
+     * <p>
+     * This only checks that the saved positions hold casings and that the
+     * parts of the restored multi-block have no neighbors outside of it, which
+     * only requires looking at the direct neighbors of each part, something
+     * we have to do anyway to connect them.
+     *
+     * @param topology the saved casing positions, see {@link #savedTopology}.
+     * @return <tt>true</tt> if the multi-block was restored; <tt>false</tt> if it no longer matches the world.
+     */
+    private boolean restore(final int[] topology) {
+        final int casingCount = topology.length / 3;
+        if (casingCount > Settings.maxCasingsPerController) {
+            return false;
+        }
+
+        // Same as in scan, if our surroundings aren't fully loaded let the
+        // scan decide what to do.
+        final World world = getWorld();
+        for (final EnumFacing facing : EnumFacing.VALUES) {
+            if (!world.isBlockLoaded(pos.offset(facing))) {
+                return false;
+            }
+        }
+
+        final List<TileEntityCasing> newCasings = new ArrayList<>(casingCount);
+        for (int i = 0; i < casingCount; i++) {
+            final BlockPos position = pos.add(topology[i * 3], topology[i * 3 + 1], topology[i * 3 + 2]);
+            if (!world.isBlockLoaded(position)) {
+                return false;
+            }
+            final TileEntity tileEntity = world.getTileEntity(position);
+            if (!(tileEntity instanceof TileEntityCasing) || !tileEntity.hasWorld()) {
+                return false;
+            }
+            final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+            if (casing.getController() != null && casing.getController() != this) {
+                return false;
+            }
+            newCasings.add(casing);
+        }
+
+        casings.clear();
+        casings.addAll(newCasings);
+        casingSet.clear();
+        casingSet.addAll(newCasings);
+        if (casingSet.size() != casings.size()) {
+            // Duplicate entries, don't trust this.
+            return false;
+        }
+        casings.forEach(c -> c.setController(this));
+
+        // Ensure our parts know their neighbors, and that they're all ours.
+        casings.forEach(TileEntityCasing::checkNeighbors);
+        checkNeighbors();
+        for (final TileEntityCasing casing : casings) {
+            if (!isContained(casing)) {
+                return false;
+            }
+        }
+        if (!isContained(this)) {
+            return false;
+        }
+
+        pendingAdded.clear();
+        pendingRemoved.clear();
+        casings.sort(CASING_ORDER);
+        rebuildStepOrder();
+
+        clearIndex();
+        addToIndex(casings);
+
+        // All done. Make sure this comes after the checkNeighbors, see scan.
+        state = ControllerState.READY;
+        return true;
+    }
+
+    /**
+     * Check whether all neighbors of a part of the multi-block are parts of
+     * the multi-block themselves.
+     *
+     * @param part the part to check the neighbors of.
+     * @return <tt>true</tt> if all neighbors are known parts; <tt>false</tt> otherwise.
+     */
+    private boolean isContained(final TileEntityComputer part) {
+        for (final TileEntityComputer neighbor : part.neighbors) {
+            if (neighbor != null && neighbor != this && !casingSet.contains(neighbor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Attach casings placed next to the multi-block since the last update.
+     * <p>
+     * Only searches the world starting at the added casings, stopping at
+     * casings already part of the multi-block, so the cost is proportional
+     * to the number of added casings, not the size of the multi-block.
+     * <p>
+     * The new casings are merged into the list of casings, keeping it in order
+     * of execution. The caller is responsible for rebuilding the step order and
+     * enabling the new casings afterwards.
+     *
+     * @return the casings that were attached.
+     */
+    private List<TileEntityCasing> attach() {
+        // List of processed tile entities to avoid loops.
+        final Set<TileEntity> processed = new HashSet<>();
+        // List of pending tile entities that still need to be scanned.
+        final Queue<TileEntity> queue = new ArrayDeque<>();
+        // List of new found casings.
+        final List<TileEntityCasing> newCasings = new ArrayList<>();
+
+        for (final TileEntityCasing casing : pendingAdded) {
+            if (!casing.isInvalid() && processed.add(casing)) {
+                queue.add(casing);
+            }
+        }
+        pendingAdded.clear();
+
+        while (!queue.isEmpty()) {
+            final TileEntity tileEntity = queue.remove();
+
+            // Don't walk into the part of the multi-block we already know.
+            if (tileEntity == this || casingSet.contains(tileEntity)) {
+                continue;
+            }
+
+            if (tileEntity instanceof TileEntityController) {
+                // We require there to be exactly one controller per multi-block.
+                addToIndex(processed);
+                clear(ControllerState.MULTIPLE_CONTROLLERS);
+                return Collections.emptyList();
+            } else /* if (tileEntity instanceof TileEntityCasing) */ {
+                // We only allow a certain number of casings per multi-block.
+                if (casings.size() + newCasings.size() + 1 > Settings.maxCasingsPerController) {
+                    addToIndex(processed);
+                    clear(ControllerState.TOO_COMPLEX);
+                    return Collections.emptyList();
+                }
+
+                final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+                newCasings.add(casing);
+                addNeighbors(getWorld(), casing, processed, queue);
+            }
+        }
+
+        // Same as in scan, if we triggered tile entity creation just do a
+        // full scan in the next tick, when they all have their world set.
+        if (newCasings.stream().anyMatch(c -> !c.hasWorld())) {
+            scheduleScan();
+            return Collections.emptyList();
+        }
+
+        for (final TileEntityCasing casing : newCasings) {
+            casing.setController(this);
+            casingSet.add(casing);
+        }
+        mergeCasings(newCasings);
+        addToIndex(newCasings);
+
+        // Ensure our new parts know their neighbors. Existing parts got
+        // notified by the world, which is how we learned of the new ones.
+        newCasings.forEach(TileEntityCasing::checkNeighbors);
+
+        return newCasings;
+    }
+
+    /**
+     * Merge the specified casings into our list of casings, which is kept
+     * in order of execution. Only the added casings have to be sorted, so
+     * attaching a few casings to a large multi-block stays cheap.
+     *
+     * @param added the casings to add, not yet part of our list of casings.
+     */
+    private void mergeCasings(final List<TileEntityCasing> added) {
+        added.sort(CASING_ORDER);
+
+        final List<TileEntityCasing> merged = new ArrayList<>(casings.size() + added.size());
+        int i = 0, j = 0;
+        while (i < casings.size() && j < added.size()) {
+            if (CASING_ORDER.compare(casings.get(i), added.get(j)) <= 0) {
+                merged.add(casings.get(i++));
+            } else {
+                merged.add(added.get(j++));
+            }
+        }
+        merged.addAll(casings.subList(i, casings.size()));
+        merged.addAll(added.subList(j, added.size()));
+
+        casings.clear();
+        casings.addAll(merged);
+    }
+
+    /**
+     * Detach casings removed from the multi-block since the last update.
+     * <p>
+     * Checks whether the remaining casings adjacent to the removed ones are
+     * still connected to the controller, by walking the known neighbors of
+     * the parts of the multi-block (no world lookups). A walk stops as soon
+     * as it reaches the controller or a casing already known to be connected,
+     * so usually only the immediate surroundings of a removed casing are
+     * visited. Casings that are no longer connected are released.
+     * <p>
+     * Removing casings keeps the list of casings in order of execution. The
+     * caller is responsible for rebuilding the step order afterwards.
+     */
+    private void detach() {
+        final List<TileEntityCasing> candidates = new ArrayList<>();
+        for (final TileEntityCasing casing : pendingRemoved) {
+            casingSet.remove(casing);
+            casing.setController(null);
+            removeFromIndex(casing);
+            for (final TileEntityComputer neighbor : casing.neighbors) {
+                if (neighbor instanceof TileEntityCasing) {
+                    candidates.add((TileEntityCasing) neighbor);
+                }
+            }
+        }
+        pendingRemoved.clear();
+
+        // Casings known to still be connected to the controller.
+        final Set<TileEntityCasing> connected = new HashSet<>();
+        // Casings no longer connected to the controller.
+        final List<TileEntityCasing> released = new ArrayList<>();
+
+        for (final TileEntityCasing candidate : candidates) {
+            if (!casingSet.contains(candidate) || connected.contains(candidate)) {
+                continue;
+            }
+
+            // Walk the candidate's component until we find a connection.
+            final Set<TileEntityCasing> visited = new HashSet<>();
+            final Queue<TileEntityCasing> queue = new ArrayDeque<>();
+            visited.add(candidate);
+            queue.add(candidate);
+            boolean isConnected = false;
+            while (!queue.isEmpty() && !isConnected) {
+                final TileEntityCasing casing = queue.remove();
+                for (final TileEntityComputer neighbor : casing.neighbors) {
+                    if (neighbor == this || connected.contains(neighbor)) {
+                        isConnected = true;
+                        break;
+                    }
+                    if (neighbor instanceof TileEntityCasing && casingSet.contains(neighbor) && visited.add((TileEntityCasing) neighbor)) {
+                        queue.add((TileEntityCasing) neighbor);
+                    }
+                }
+            }
+
+            if (isConnected) {
+                connected.addAll(visited);
+            } else {
+                // Walked the whole component, it's split off.
+                casingSet.removeAll(visited);
+                released.addAll(visited);
+            }
+        }
+
+        casings.removeIf(casing -> !casingSet.contains(casing));
+
+        // Same as for splits in scan, let the released casings look for
+        // another controller, or disable themselves.
+        released.forEach(this::removeFromIndex);
+        released.forEach(c -> c.setController(null));
+        released.forEach(TileEntityCasing::scheduleScan);
+    }
+
+    /**
+     * Remove all entries pointing to this controller from the {@link ControllerIndex}.
+     */
+    private void clearIndex() {
+        for (final BlockPos position : indexedPositions) {
+            ControllerIndex.INSTANCE.remove(getWorld(), position, this);
+        }
+        indexedPositions.clear();
+    }
+
+    /**
+     * Register this controller as the controller of the specified casings in the
+     * {@link ControllerIndex}. Tile entities that are not casings are skipped.
+     *
+     * @param parts the casings to register this controller for.
+     */
+    private void addToIndex(final Iterable<? extends TileEntity> parts) {
+        for (final TileEntity part : parts) {
+            if (part instanceof TileEntityCasing) {
+                ControllerIndex.INSTANCE.put(getWorld(), part.getPos(), this);
+                indexedPositions.add(part.getPos());
+            }
+        }
+    }
+
+    /**
+     * Remove the entry for the specified casing from the {@link ControllerIndex},
+     * if it points to this controller.
+     *
+     * @param casing the casing to remove the entry for.
+     */
+    private void removeFromIndex(final TileEntityCasing casing) {
+        ControllerIndex.INSTANCE.remove(getWorld(), casing.getPos(), this);
+        indexedPositions.remove(casing.getPos());
+    }
+
+    /**
+     * Get the number of steps to perform per tick when stepping at least once
+     * per tick, based on the current redstone power.
+     *
+     * @return the number of steps to perform this tick.
+     */
+    private int getStepsPerTick() {
+        final int steps = power / 15;
+        if (power >= MAX_POWER && Settings.overclockedStepsPerTick > steps) {
+            return Settings.overclockedStepsPerTick;
+        }
+        return steps;
+    }
+
     /**
      * Compute the <em>accumulative</em> redstone power applied to the controller.
      *
@@ -513,13 +1327,115 @@ public final class TileEntityController extends TileEntityComputer implements IT
         return acc;
     }
 
+    /**
+     * Precompute the order of execution after the multi-block changed and
+     * collect the pipes and edges that currently need to be advanced.
+     * <p>
+     * Expects the list of casings to already be sorted by {@link #CASING_ORDER}.
+     */
+    private void rebuildStepOrder() {
+        activePipes.forEach(PipeImpl::unschedule);
+        activePipes.clear();
+        activeEdges.clear();
+        edgeReceivingPipes = new PipeImpl[casings.size() * EDGES_PER_CASING];
+        edgeSendingPipes = new PipeImpl[casings.size() * EDGES_PER_CASING];
+        for (int index = 0; index < casings.size(); index++) {
+            final TileEntityCasing casing = casings.get(index);
+            casing.partIndex = index;
+            casing.collectActivePipes(activePipes);
+
+            int edge = index * EDGES_PER_CASING;
+            for (final Face face : Face.VALUES) {
+                for (final Port port : Port.VALUES) {
+                    final PipeImpl receivingPipe = casing.getForwarderReceivingPipe(face, port);
+                    final PipeImpl sendingPipe = casing.getForwarderSendingPipe(face, port);
+                    if (receivingPipe != null && sendingPipe != null) {
+                        edgeReceivingPipes[edge] = receivingPipe;
+                        edgeSendingPipes[edge] = sendingPipe;
+                        if (!isIdle(receivingPipe, sendingPipe)) {
+                            activeEdges.set(edge);
+                        }
+                    }
+                    edge++;
+                }
+            }
+        }
+
+        modulesChanged = true;
+    }
+
+    /**
+     * Collect the modules installed in our casings in order of execution.
+     */
+    private void rebuildModules() {
+        final List<Module> installed = new ArrayList<>();
+        for (final TileEntityCasing casing : casings) {
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module != null) {
+                    installed.add(module);
+                }
+            }
+        }
+        modules = installed.toArray(new Module[installed.size()]);
+        modulesChanged = false;
+    }
+
     /**
      * Advance all computer parts by one step.
+     * <p>
+     * Only pipes and edges between casings that actually have something to do
+     * are advanced, so the cost of a step depends on the number of installed
+     * modules and active connections, not the size of the multi-block. The
+     * order of execution is the same as advancing everything, casing by casing.
+     * <p>
+     * Modules are advanced strictly in order, on the thread driving the
+     * controller. While modules of non-adjacent casings never share a pipe,
+     * stepping them still has shared side effects: completing a read notifies
+     * the writer, which may be the forwarder of a neighboring casing, modules
+     * draw from the world's random generator, cause block updates and queue
+     * network messages, and starting an operation schedules pipes and edges
+     * here. Running groups of modules concurrently would make the outcome
+     * depend on thread timing, so don't.
      */
     private void step() {
-        casings.forEach(TileEntityCasing::stepModules);
-        casings.forEach(TileEntityCasing::stepPipes);
-        casings.forEach(TileEntityCasing::stepForwarders);
+        if (modulesChanged) {
+            rebuildModules();
+        }
+
+        for (final Module module : modules) {
+            module.step();
+        }
+
+        // Pipes are independent of each other, so the order does not matter.
+        // Stepping them does not start new operations, so the list is stable.
+        int activeCount = 0;
+        for (int i = 0; i < activePipes.size(); i++) {
+            final PipeImpl pipe = activePipes.get(i);
+            pipe.step();
+            if (pipe.needsStep()) {
+                activePipes.set(activeCount++, pipe);
+            } else {
+                pipe.unschedule();
+            }
+        }
+        activePipes.subList(activeCount, activePipes.size()).clear();
+
+        // Edges scheduled while iterating with a higher index are still
+        // advanced in this step, same as when advancing all of them in order.
+        for (int edge = activeEdges.nextSetBit(0); edge >= 0; edge = activeEdges.nextSetBit(edge + 1)) {
+            final PipeImpl receivingPipe = edgeReceivingPipes[edge];
+            final PipeImpl sendingPipe = edgeSendingPipes[edge];
+            if (receivingPipe == null || sendingPipe == null) {
+                activeEdges.clear(edge);
+                continue;
+            }
+
+            forward(receivingPipe, sendingPipe);
+            if (isIdle(receivingPipe, sendingPipe)) {
+                activeEdges.clear(edge);
+            }
+        }
 
         stepPipes();
         stepForwarders();
@@ -542,6 +1458,8 @@ public final class TileEntityController extends TileEntityComputer implements IT
         for (final TileEntityCasing casing : casings) {
             casing.setController(null);
         }
+        pendingAdded.clear();
+        pendingRemoved.clear();
 
         // Disable modules if we're in an errored state. If we're in an
         // incomplete state or rescanning, leave the state as is to avoid
@@ -550,6 +1468,8 @@ public final class TileEntityController extends TileEntityComputer implements IT
             casings.forEach(TileEntityCasing::onDisabled);
         }
         casings.clear();
+        casingSet.clear();
+        rebuildStepOrder();
 
         state = toState;
     }
@@ -33,6 +33,21 @@ public final class ColorUtils {
         return COLORS[index % COLORS.length];
     }
 
+    /**
+     * Get the dye color index for the specified ARGB color value.
+     *
+     * @param color the color to get the index for.
+     * @return the index of the color, or <tt>-1</tt> if it is not a dye color.
+     */
+    public static int getIndexByColor(final int color) {
+        for (int index = 0; index < COLORS.length; index++) {
+            if (COLORS[index] == color) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Get the alpha component of an ARGB color as a float in [0, 1].
      *
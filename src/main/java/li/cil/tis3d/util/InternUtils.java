@@ -0,0 +1,96 @@
+package li.cil.tis3d.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility methods for sharing immutable data with equal contents.
+ * <p>
+ * Arrays are looked up by the hash of their contents. Only weak references
+ * to interned arrays are kept, so arrays no longer used anywhere else are
+ * dropped automatically.
+ */
+public final class InternUtils {
+    private static final Map<Integer, List<Entry>> byteArrays = new HashMap<>();
+    private static final ReferenceQueue<byte[]> staleByteArrays = new ReferenceQueue<>();
+
+    /**
+     * Get the canonical instance of a byte array with the specified contents.
+     * <p>
+     * If an array with equal contents was interned before and is still in
+     * use, that array is returned, otherwise the specified array becomes the
+     * canonical instance. Interned arrays are shared, and must therefore not
+     * be modified after being passed to this method.
+     *
+     * @param data the array to intern.
+     * @return the canonical array with the same contents.
+     */
+    public static synchronized byte[] intern(final byte[] data) {
+        return doIntern(data, false);
+    }
+
+    /**
+     * Get the canonical instance of a byte array with the specified contents,
+     * without taking ownership of the specified array.
+     * <p>
+     * Like {@link #intern(byte[])}, but if no array with equal contents is
+     * interned yet, a copy of the specified array becomes the canonical
+     * instance. Useful for arrays owned by someone else, e.g. read from NBT,
+     * which only get copied if their contents are not already known.
+     *
+     * @param data the array to look up.
+     * @return the canonical array with the same contents.
+     */
+    public static synchronized byte[] internCopy(final byte[] data) {
+        return doIntern(data, true);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static byte[] doIntern(final byte[] data, final boolean copy) {
+        expungeStaleEntries();
+
+        final int hash = Arrays.hashCode(data);
+        final List<Entry> entries = byteArrays.computeIfAbsent(hash, h -> new ArrayList<>(1));
+        for (final Entry entry : entries) {
+            final byte[] candidate = entry.get();
+            if (candidate != null && Arrays.equals(candidate, data)) {
+                return candidate;
+            }
+        }
+        final byte[] canonical = copy ? data.clone() : data;
+        entries.add(new Entry(canonical, hash));
+        return canonical;
+    }
+
+    private static void expungeStaleEntries() {
+        Reference<? extends byte[]> reference;
+        while ((reference = staleByteArrays.poll()) != null) {
+            final Entry entry = (Entry) reference;
+            final List<Entry> entries = byteArrays.get(entry.hash);
+            if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+                byteArrays.remove(entry.hash);
+            }
+        }
+    }
+
+    private static final class Entry extends WeakReference<byte[]> {
+        private final int hash;
+
+        Entry(final byte[] data, final int hash) {
+            super(data, staleByteArrays);
+            this.hash = hash;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private InternUtils() {
+    }
+}
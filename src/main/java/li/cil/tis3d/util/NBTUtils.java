@@ -0,0 +1,84 @@
+package li.cil.tis3d.util;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraftforge.common.util.Constants;
+
+/**
+ * Utility methods for storing primitive arrays in NBT more compactly than
+ * the types provided by NBT itself allow.
+ */
+public final class NBTUtils {
+    /**
+     * Store an array of shorts as a byte array, two bytes per value (big endian).
+     * <p>
+     * NBT has no native short array type, and using an int array would
+     * waste two bytes per value.
+     *
+     * @param nbt     the tag to store the data in.
+     * @param tagName the name of the tag to store the data under.
+     * @param values  the values to store.
+     */
+    public static void setShortArray(final NBTTagCompound nbt, final String tagName, final short[] values) {
+        final byte[] data = new byte[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            data[i * 2] = (byte) (values[i] >> 8);
+            data[i * 2 + 1] = (byte) values[i];
+        }
+        nbt.setByteArray(tagName, data);
+    }
+
+    /**
+     * Load an array of shorts stored via {@link #setShortArray(NBTTagCompound, String, short[])}
+     * into the specified array.
+     * <p>
+     * For backwards compatibility this also accepts int arrays, which is
+     * how short arrays used to be stored.
+     *
+     * @param nbt     the tag to read the data from.
+     * @param tagName the name of the tag the data is stored under.
+     * @param values  the array to write the loaded values into.
+     * @return the number of values loaded.
+     */
+    public static int getShortArray(final NBTTagCompound nbt, final String tagName, final short[] values) {
+        if (nbt.hasKey(tagName, Constants.NBT.TAG_INT_ARRAY)) {
+            final int[] data = nbt.getIntArray(tagName);
+            final int count = Math.min(data.length, values.length);
+            for (int i = 0; i < count; i++) {
+                values[i] = (short) data[i];
+            }
+            return count;
+        }
+
+        final byte[] data = nbt.getByteArray(tagName);
+        final int count = Math.min(data.length / 2, values.length);
+        for (int i = 0; i < count; i++) {
+            values[i] = (short) (((data[i * 2] & 0xFF) << 8) | (data[i * 2 + 1] & 0xFF));
+        }
+        return count;
+    }
+
+    /**
+     * Load an array of shorts stored via {@link #setShortArray(NBTTagCompound, String, short[])},
+     * however many values were stored.
+     *
+     * @param nbt     the tag to read the data from.
+     * @param tagName the name of the tag the data is stored under.
+     * @return the loaded values.
+     */
+    public static short[] getShortArray(final NBTTagCompound nbt, final String tagName) {
+        final int count;
+        if (nbt.hasKey(tagName, Constants.NBT.TAG_INT_ARRAY)) {
+            count = nbt.getIntArray(tagName).length;
+        } else {
+            count = nbt.getByteArray(tagName).length / 2;
+        }
+        final short[] values = new short[count];
+        getShortArray(nbt, tagName, values);
+        return values;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private NBTUtils() {
+    }
+}
@@ -0,0 +1,501 @@
+package li.cil.tis3d.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * A ring buffer of primitive shorts, usable both as FIFO and as LIFO queue.
+ * <p>
+ * Storage grows as needed up to the configured capacity, so large capacities
+ * only cost memory when they are actually used.
+ * <p>
+ * All modifications made via the public methods are recorded as operations,
+ * which can be sent to clients via {@link #writeChanges(ByteBuf)} and
+ * replayed there via {@link #applyChanges(ByteBuf)}. This way only what
+ * changed has to be sent, instead of the whole contents of the buffer.
+ * <p>
+ * Operations are numbered, and the number of the last operation is stored
+ * with the contents, so that clients can skip operations already contained
+ * in contents they received in bulk, regardless of the order both arrive in.
+ * <p>
+ * Buffers that are never sent to clients can be created with recording
+ * disabled, to avoid the overhead of recording operations nobody reads.
+ */
+public final class ShortRingBuffer {
+    /**
+     * The maximum number of values the buffer may store.
+     */
+    private final int capacity;
+
+    /**
+     * The stored values, grown as needed.
+     */
+    private short[] values;
+
+    /**
+     * The index of the first value in {@link #values}.
+     */
+    private int head;
+
+    /**
+     * The number of values currently stored.
+     */
+    private int size;
+
+    /**
+     * The number of operations performed on the buffer so far. On clients
+     * the number of the last operation applied.
+     */
+    private int sequence;
+
+    /**
+     * Whether operations are recorded in {@link #changes}.
+     */
+    private final boolean isRecording;
+
+    /**
+     * Operations performed since they were last confirmed as sent.
+     */
+    private final ByteBuf changes;
+
+    /**
+     * The {@link #sequence} before the first operation in {@link #changes}.
+     */
+    private int changesSequence;
+
+    /**
+     * The number of bytes in {@link #changes} written in the last call to
+     * {@link #writeChanges(ByteBuf)}.
+     */
+    private int writtenChanges;
+
+    /**
+     * The {@link #sequence} at the last call to {@link #writeChanges(ByteBuf)}.
+     */
+    private int writtenSequence;
+
+    // Recorded operation types.
+    private static final byte OP_PUSH_LAST = 0;
+    private static final byte OP_POP_FIRST = 1;
+    private static final byte OP_POP_LAST = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final byte OP_SET = 4;
+
+    /**
+     * The initial size of the array backing the buffer.
+     */
+    private static final int INITIAL_SIZE = 16;
+
+    // Suffix of the tag name the sequence number is stored under.
+    private static final String TAG_SEQUENCE_SUFFIX = "Sequence";
+
+    // --------------------------------------------------------------------- //
+
+    public ShortRingBuffer(final int capacity) {
+        this(capacity, true);
+    }
+
+    /**
+     * Creates a new buffer, optionally without recording operations.
+     *
+     * @param capacity    the maximum number of values the buffer may store.
+     * @param isRecording whether to record operations for {@link #writeChanges(ByteBuf)}.
+     */
+    public ShortRingBuffer(final int capacity, final boolean isRecording) {
+        this.capacity = capacity;
+        this.values = new short[Math.min(capacity, INITIAL_SIZE)];
+        this.isRecording = isRecording;
+        this.changes = isRecording ? Unpooled.buffer() : Unpooled.EMPTY_BUFFER;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The maximum number of values the buffer may store.
+     *
+     * @return the capacity of the buffer.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * The number of values currently stored in the buffer.
+     *
+     * @return the size of the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the buffer is currently empty, i.e. no more items can be retrieved.
+     *
+     * @return <tt>true</tt> if the buffer is empty, <tt>false</tt> otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether the buffer is currently full, i.e. no more items can be stored.
+     *
+     * @return <tt>true</tt> if the buffer is full, <tt>false</tt> otherwise.
+     */
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    /**
+     * Get the value at the specified index, counting from the first value.
+     *
+     * @param index the index of the value to get.
+     * @return the value at that index.
+     * @throws ArrayIndexOutOfBoundsException if the index is out of bounds.
+     */
+    public short get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return values[(head + index) % values.length];
+    }
+
+    /**
+     * Retrieve the first value, i.e. the value that was pushed the earliest.
+     *
+     * @return the first value in the buffer.
+     * @throws ArrayIndexOutOfBoundsException if the buffer is empty.
+     */
+    public short peekFirst() {
+        return get(0);
+    }
+
+    /**
+     * Retrieve the last value, i.e. the value that was pushed the latest.
+     *
+     * @return the last value in the buffer.
+     * @throws ArrayIndexOutOfBoundsException if the buffer is empty.
+     */
+    public short peekLast() {
+        return get(size - 1);
+    }
+
+    /**
+     * Store the specified value at the end of the buffer.
+     *
+     * @param value the value to store.
+     * @throws ArrayIndexOutOfBoundsException if the buffer is full.
+     */
+    public void pushLast(final short value) {
+        if (isFull()) {
+            throw new ArrayIndexOutOfBoundsException(size);
+        }
+        doPushLast(value);
+
+        if (isRecording) {
+            changes.writeByte(OP_PUSH_LAST);
+            changes.writeShort(value);
+            sequence++;
+            compactChanges();
+        }
+    }
+
+    /**
+     * Remove the first value from the buffer.
+     *
+     * @return the removed value.
+     * @throws ArrayIndexOutOfBoundsException if the buffer is empty.
+     */
+    public short popFirst() {
+        final short value = peekFirst();
+        doPopFirst();
+
+        if (isRecording) {
+            changes.writeByte(OP_POP_FIRST);
+            sequence++;
+            compactChanges();
+        }
+
+        return value;
+    }
+
+    /**
+     * Remove the last value from the buffer.
+     *
+     * @return the removed value.
+     * @throws ArrayIndexOutOfBoundsException if the buffer is empty.
+     */
+    public short popLast() {
+        final short value = peekLast();
+        doPopLast();
+
+        if (isRecording) {
+            changes.writeByte(OP_POP_LAST);
+            sequence++;
+            compactChanges();
+        }
+
+        return value;
+    }
+
+    /**
+     * Remove all values from the buffer.
+     */
+    public void clear() {
+        doClear();
+
+        if (isRecording) {
+            // Nothing recorded before matters anymore.
+            changes.clear();
+            writtenChanges = 0;
+            changes.writeByte(OP_CLEAR);
+            sequence++;
+            changesSequence = sequence - 1;
+            writtenSequence = changesSequence;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Check whether there were operations since the last call to
+     * {@link #writeChanges(ByteBuf)}.
+     *
+     * @return <tt>true</tt> if there are new changes; <tt>false</tt> otherwise.
+     */
+    public boolean hasNewChanges() {
+        return changes.readableBytes() > writtenChanges;
+    }
+
+    /**
+     * Write all operations recorded since the last call to {@link #confirmChanges()}.
+     * <p>
+     * The data written this way is meant to replace data written in previous
+     * calls that has not been sent yet. If recording is disabled, no
+     * operations are written.
+     *
+     * @param data the buffer to write the operations to.
+     */
+    public void writeChanges(final ByteBuf data) {
+        writtenChanges = changes.readableBytes();
+        writtenSequence = sequence;
+        data.writeInt(changesSequence);
+        data.writeInt(writtenChanges);
+        data.writeBytes(changes, changes.readerIndex(), writtenChanges);
+    }
+
+    /**
+     * Forget the operations written in the last call to {@link #writeChanges(ByteBuf)},
+     * to be called once those have been sent.
+     */
+    public void confirmChanges() {
+        changes.skipBytes(writtenChanges);
+        changes.discardReadBytes();
+        writtenChanges = 0;
+        changesSequence = writtenSequence;
+    }
+
+    /**
+     * Replay operations written via {@link #writeChanges(ByteBuf)}.
+     * <p>
+     * The capacity is not enforced while doing so, to avoid losing values
+     * if the capacity differs between the writing and the reading side.
+     * <p>
+     * Operations that do not directly follow the last applied one are
+     * skipped, since they were either applied already, or are based on
+     * contents we did not receive yet. Operations replacing the contents
+     * are always applied.
+     *
+     * @param data the buffer to read the operations from.
+     */
+    public void applyChanges(final ByteBuf data) {
+        int opSequence = data.readInt();
+        final int end = data.readInt() + data.readerIndex();
+        while (data.readerIndex() < end) {
+            opSequence++;
+            final boolean isNext = opSequence == sequence + 1;
+            switch (data.readByte()) {
+                case OP_PUSH_LAST:
+                    final short value = data.readShort();
+                    if (isNext) {
+                        doPushLast(value);
+                        sequence = opSequence;
+                    }
+                    break;
+                case OP_POP_FIRST:
+                    if (isNext) {
+                        if (size > 0) {
+                            doPopFirst();
+                        }
+                        sequence = opSequence;
+                    }
+                    break;
+                case OP_POP_LAST:
+                    if (isNext) {
+                        if (size > 0) {
+                            doPopLast();
+                        }
+                        sequence = opSequence;
+                    }
+                    break;
+                case OP_CLEAR:
+                    doClear();
+                    sequence = opSequence;
+                    break;
+                case OP_SET:
+                    doClear();
+                    readFromByteBuf(data);
+                    sequence = opSequence;
+                    break;
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Write the current contents of the buffer.
+     *
+     * @param data the buffer to write the contents to.
+     */
+    public void writeToByteBuf(final ByteBuf data) {
+        data.writeShort(size);
+        for (int i = 0; i < size; i++) {
+            data.writeShort(get(i));
+        }
+    }
+
+    /**
+     * Append values written via {@link #writeToByteBuf(ByteBuf)}.
+     * <p>
+     * Like {@link #applyChanges(ByteBuf)}, this does not enforce the capacity.
+     *
+     * @param data the buffer to read the values from.
+     */
+    public void readFromByteBuf(final ByteBuf data) {
+        final int count = data.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            doPushLast(data.readShort());
+        }
+    }
+
+    /**
+     * Store the current contents of the buffer in the specified tag.
+     *
+     * @param nbt     the tag to store the data in.
+     * @param tagName the name of the tag to store the data under.
+     */
+    public void writeToNBT(final NBTTagCompound nbt, final String tagName) {
+        final short[] data = new short[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = get(i);
+        }
+        NBTUtils.setShortArray(nbt, tagName, data);
+        if (isRecording) {
+            nbt.setInteger(tagName + TAG_SEQUENCE_SUFFIX, sequence);
+        }
+    }
+
+    /**
+     * Replace the contents of the buffer with values stored via
+     * {@link #writeToNBT(NBTTagCompound, String)}.
+     * <p>
+     * Like {@link #applyChanges(ByteBuf)}, this may be used to load the state
+     * sent by another side, which may use a different capacity. Only enforce
+     * the capacity where the data is actually used, i.e. on the server.
+     *
+     * @param nbt             the tag to read the data from.
+     * @param tagName         the name of the tag the data is stored under.
+     * @param enforceCapacity whether to drop values exceeding the capacity.
+     */
+    public void readFromNBT(final NBTTagCompound nbt, final String tagName, final boolean enforceCapacity) {
+        final short[] data = NBTUtils.getShortArray(nbt, tagName);
+        final int count = enforceCapacity ? Math.min(data.length, capacity) : data.length;
+        doSet(data, 0, count);
+        if (nbt.hasKey(tagName + TAG_SEQUENCE_SUFFIX)) {
+            sequence = nbt.getInteger(tagName + TAG_SEQUENCE_SUFFIX);
+            changesSequence = sequence;
+            writtenSequence = sequence;
+        }
+    }
+
+    /**
+     * Replace the contents of the buffer with the specified values. Values
+     * exceeding the capacity are dropped.
+     * <p>
+     * This is meant for loading data, and is not recorded as an operation.
+     * It does start a new sequence of operations, though, so that clients
+     * only apply following operations once they received the new contents.
+     *
+     * @param data   the array holding the values.
+     * @param offset the index of the first value in the array.
+     * @param count  the number of values.
+     */
+    public void set(final short[] data, final int offset, final int count) {
+        doSet(data, offset, Math.min(count, capacity));
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void doSet(final short[] data, final int offset, final int count) {
+        doClear();
+        for (int i = 0; i < count; i++) {
+            doPushLast(data[offset + i]);
+        }
+
+        changes.clear();
+        writtenChanges = 0;
+        sequence++;
+        changesSequence = sequence;
+        writtenSequence = sequence;
+    }
+
+    private void doPushLast(final short value) {
+        if (size == values.length) {
+            grow();
+        }
+        values[(head + size) % values.length] = value;
+        size++;
+    }
+
+    private void doPopFirst() {
+        head = (head + 1) % values.length;
+        size--;
+    }
+
+    private void doPopLast() {
+        size--;
+    }
+
+    private void doClear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        final short[] grown = new short[Math.max(1, values.length * 2)];
+        for (int i = 0; i < size; i++) {
+            grown[i] = values[(head + i) % values.length];
+        }
+        values = grown;
+        head = 0;
+    }
+
+    /**
+     * Replace the recorded operations with the current contents once sending
+     * the contents would be cheaper than sending the operations.
+     */
+    private void compactChanges() {
+        if (changes.readableBytes() <= 3 + size * 2) {
+            return;
+        }
+
+        changes.clear();
+        writtenChanges = 0;
+        changes.writeByte(OP_SET);
+        writeToByteBuf(changes);
+        changesSequence = sequence - 1;
+        writtenSequence = changesSequence;
+    }
+}